@@ -0,0 +1,78 @@
+package player;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lexing, parsing and rendering of pieces from the ABCGenerator, from kilobytes up to tens of megabytes
+ *
+ * Each step should take time in proportion to the bars, so the time per bar across the bars
+ * params shows whether a change made any of them grow faster than linearly
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class GeneratedBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class GeneratedState {
+        @Param({"100", "10000", "100000"})
+        public int bars;
+
+        @Param({"1", "4"})
+        public int voices;
+
+        public String text;
+        public ABCMusic music;
+        public NoteStore store;
+
+        @Setup
+        public void generate() {
+            text = new ABCGenerator(0).setBars(bars).setVoices(voices).generate();
+            music = new ABCParser(new ABCLexer(text)).parse();
+            store = new ABCParser(new ABCLexer(text)).parseToStore();
+        }
+    }
+
+    @Benchmark
+    public int lex(GeneratedState state) {
+        return LexerBenchmark.lexAll(new ABCLexer(state.text));
+    }
+
+    @Benchmark
+    public ABCMusic parse(GeneratedState state) {
+        return new ABCParser(new ABCLexer(state.text)).parse();
+    }
+
+    @Benchmark
+    public long render(GeneratedState state) {
+        RenderBenchmark.SummingSink sink = new RenderBenchmark.SummingSink();
+        RenderBenchmark.render(state.music, sink);
+        return sink.sum;
+    }
+
+    @Benchmark
+    public NoteStore parseToStore(GeneratedState state) {
+        return new ABCParser(new ABCLexer(state.text)).parseToStore();
+    }
+
+    @Benchmark
+    public long renderStore(GeneratedState state) {
+        RenderBenchmark.SummingSink sink = new RenderBenchmark.SummingSink();
+        new ABCRenderer(state.store).render(state.store, sink);
+        return sink.sum;
+    }
+}
@@ -0,0 +1,56 @@
+package player;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tokenization throughput of the ABCLexer, for each of its engines
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+    
+    @Benchmark
+    public int lexScanner(ScoreState score) {
+        return lexAll(new ABCLexer(score.text, ABCLexer.Mode.SCANNER));
+    }
+    
+    @Benchmark
+    public int lexPattern(ScoreState score) {
+        return lexAll(new ABCLexer(score.text, ABCLexer.Mode.PATTERN));
+    }
+    
+    /**
+     * Lexes the whole input, building every Token
+     * 
+     * @return The number of Tokens lexed
+     */
+    static int lexAll(ABCLexer lexer) {
+        int count = 0;
+        while (!lexer.IsDone()) {
+            switch (lexer.GetNextTokenType()) {
+            case NOTE: case REST: case CHORD: case TUPLET:
+                lexer.getNextNoteToken();
+                break;
+            case END_OF_LINE:
+                lexer.getEndOfLineToken();
+                break;
+            default:
+                lexer.getNextElemToken();
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+}
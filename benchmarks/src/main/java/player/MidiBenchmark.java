@@ -0,0 +1,121 @@
+package player;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Sequence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sound.NoteSink;
+import sound.SequencePlayer;
+
+/**
+ * Cost of building the MIDI track of a piece through SequencePlayer.addNote, one note at a time
+ * or all at once, and of writing the piece as a MIDI file
+ * 
+ * Note: a SequencePlayer opens the system Sequencer, so the addNote benchmarks need a MIDI device
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MidiBenchmark {
+    
+    @State(Scope.Benchmark)
+    public static class NotesState {
+        // The rendered notes of the piece as pitch, start tick and length
+        public int[] notes;
+        public int[] startTicks;
+        public int[] numTicks;
+        public int count;
+        public ABCMusic music;
+        // The same notes trimmed to their count, as SequencePlayer.addNotes takes them
+        public int[] bulkNotes;
+        public long[] bulkStartTicks;
+        public int[] bulkNumTicks;
+        
+        @Setup
+        public void render(ScoreState score) {
+            music = new ABCParser(new ABCLexer(score.text)).parse();
+            notes = new int[16];
+            startTicks = new int[16];
+            numTicks = new int[16];
+            RenderBenchmark.render(music, new NoteSink() {
+                @Override
+                public void addNote(int note, int startTick, int length) {
+                    if (count == notes.length) {
+                        notes = Arrays.copyOf(notes, count * 2);
+                        startTicks = Arrays.copyOf(startTicks, count * 2);
+                        numTicks = Arrays.copyOf(numTicks, count * 2);
+                    }
+                    notes[count] = note;
+                    startTicks[count] = startTick;
+                    numTicks[count] = length;
+                    count++;
+                }
+            });
+            bulkNotes = Arrays.copyOf(notes, count);
+            bulkNumTicks = Arrays.copyOf(numTicks, count);
+            bulkStartTicks = new long[count];
+            for (int i = 0; i < count; i++) {
+                bulkStartTicks[i] = startTicks[i];
+            }
+        }
+    }
+    
+    @State(Scope.Thread)
+    public static class PlayerState {
+        public SequencePlayer player;
+        
+        @Setup(Level.Invocation)
+        public void open(NotesState notes) throws MidiUnavailableException, InvalidMidiDataException {
+            player = new SequencePlayer(notes.music.getQuartersPerMinute(), notes.music.getTicksPerQuarter());
+        }
+    }
+    
+    @Benchmark
+    public SequencePlayer addNotes(NotesState notes, PlayerState state) {
+        for (int i = 0; i < notes.count; i++) {
+            state.player.addNote(notes.notes[i], notes.startTicks[i], notes.numTicks[i]);
+        }
+        return state.player;
+    }
+    
+    @Benchmark
+    public SequencePlayer addNotesBulk(NotesState notes, PlayerState state) {
+        state.player.addNotes(notes.bulkNotes, notes.bulkStartTicks, notes.bulkNumTicks);
+        return state.player;
+    }
+    
+    @Benchmark
+    public int writeMidi(NotesState notes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        notes.music.writeMidi(out);
+        return out.size();
+    }
+    
+    @Benchmark
+    public int writeMidiThroughSequence(NotesState notes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Sequence sequence = notes.music.toSequence();
+        MidiSystem.write(sequence, sequence.getTracks().length == 1 ? 0 : 1, out);
+        return out.size();
+    }
+}
@@ -0,0 +1,57 @@
+package player;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of ABCParser.parse(), lexing included as the two cannot be separated, against
+ * loading the same piece precompiled as a ScoreFile
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    
+    @State(Scope.Benchmark)
+    public static class SavedState {
+        // The piece saved as a ScoreFile
+        public byte[] bytes;
+        
+        @Setup
+        public void save(ScoreState score) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ScoreFile.write(new ABCParser(new ABCLexer(score.text)).parseToStore(), out);
+            bytes = out.toByteArray();
+        }
+    }
+    
+    @Benchmark
+    public ABCMusic parse(ScoreState score) {
+        return new ABCParser(new ABCLexer(score.text)).parse();
+    }
+    
+    @Benchmark
+    public NoteStore parseToStore(ScoreState score) {
+        return new ABCParser(new ABCLexer(score.text)).parseToStore();
+    }
+    
+    @Benchmark
+    public NoteStore readScore(SavedState saved) throws IOException {
+        return ScoreFile.read(ByteBuffer.wrap(saved.bytes));
+    }
+}
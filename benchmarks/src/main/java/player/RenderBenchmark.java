@@ -0,0 +1,79 @@
+package player;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sound.NoteSink;
+import sound.Timeline;
+
+/**
+ * Cost of turning a parsed ABCMusic into pitched notes on ticks, without any MIDI
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+    
+    @State(Scope.Benchmark)
+    public static class ParsedState {
+        public ABCMusic music;
+        
+        @Setup
+        public void parse(ScoreState score) {
+            music = new ABCParser(new ABCLexer(score.text)).parse();
+        }
+    }
+    
+    /**
+     * A NoteSink that only keeps a checksum of what it is given
+     */
+    static class SummingSink implements NoteSink {
+        long sum = 0;
+        
+        @Override
+        public void addNote(int note, int startTick, int numTicks) {
+            sum += note + startTick + numTicks;
+        }
+    }
+    
+    @Benchmark
+    public long render(ParsedState parsed) {
+        SummingSink sink = new SummingSink();
+        render(parsed.music, sink);
+        return sink.sum;
+    }
+    
+    @Benchmark
+    public Timeline[] renderTimelinesInTurn(ParsedState parsed) {
+        ABCRenderer renderer = new ABCRenderer(parsed.music);
+        Timeline[] timelines = new Timeline[parsed.music.VoicesList.size()];
+        for (int v = 0; v < timelines.length; v++) {
+            timelines[v] = renderer.renderTimeline(parsed.music.VoicesList.get(v));
+        }
+        return timelines;
+    }
+    
+    @Benchmark
+    public Timeline[] renderTimelinesAtOnce(ParsedState parsed) {
+        return new ABCRenderer(parsed.music).renderTimelines();
+    }
+    
+    /**
+     * Renders every Voice of the piece onto the sink, one after the other
+     */
+    static void render(ABCMusic music, NoteSink sink) {
+        new ABCRenderer(music).render(sink);
+    }
+}
@@ -0,0 +1,71 @@
+package player;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The text of a piece for the benchmarks to run over, one of the files in sample_abc with its
+ * music repeated scale times after the header, so every quadratic path shows up as the scale grows
+ * 
+ * Note: the files are read from ./sample_abc unless -Dabc.samples names another directory, so run
+ * the benchmarks from the project root
+ */
+@State(Scope.Benchmark)
+public class ScoreState {
+    @Param({"fur_elise", "harryp", "invention", "little_night_music", "paddy", "piece1", "piece2",
+            "prelude", "scale", "smoothcriminal", "user1", "user2", "user3", "user4", "waltzing"})
+    public String piece;
+    
+    @Param({"1", "10", "100", "1000"})
+    public int scale;
+    
+    // The scaled text of the piece
+    public String text;
+    
+    @Setup
+    public void load() throws IOException {
+        text = load(piece, scale);
+    }
+    
+    /**
+     * Reads a sample piece and repeats everything after its K: field
+     * 
+     * @param piece, the name of the file in sample_abc without its extension
+     * @param scale, the number of times to play the music of the piece
+     * @return The text of the scaled piece, lines joined by "\n"
+     */
+    public static String load(String piece, int scale) throws IOException {
+        String directory = System.getProperty("abc.samples", "./sample_abc");
+        BufferedReader reader = new BufferedReader(new FileReader(directory + "/" + piece + ".abc"));
+        List<String> lines = new ArrayList<String>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+        reader.close();
+        
+        StringBuilder header = new StringBuilder();
+        StringBuilder music = new StringBuilder();
+        boolean inMusic = false;
+        for (String each : lines) {
+            if (inMusic) {
+                music.append(each).append('\n');
+            } else {
+                header.append(each).append('\n');
+                inMusic = each.startsWith("K:");
+            }
+        }
+        for (int i = 0; i < scale; i++) {
+            header.append(music);
+        }
+        return header.toString();
+    }
+}
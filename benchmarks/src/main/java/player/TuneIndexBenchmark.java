@@ -0,0 +1,85 @@
+package player;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Searching a TuneIndex of up to a million tunes, built in memory as no library on disk is that
+ * large, for the queries a library is most often asked: a common Key narrowed by a range, and a
+ * word found in only a few Titles
+ *
+ * Each search should take well under a millisecond at a million tunes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TuneIndexBenchmark {
+    private static final String[] KEYS = {"C", "G", "D", "A", "E", "B", "F#", "F", "Bb", "Eb", "Ab", "Db",
+        "Am", "Em", "Bm", "F#m", "C#m", "G#m", "Dm", "Gm", "Cm", "Fm", "Bbm", "Ebm"};
+    private static final String[] DANCES = {"Reel", "Jig", "Waltz", "Hornpipe", "Polka", "Slide", "Air", "March"};
+    // Each place names about twenty of a million tunes
+    private static final int PLACES = 50000;
+
+    @State(Scope.Benchmark)
+    public static class IndexState {
+        @Param({"10000", "1000000"})
+        public int tunes;
+
+        public TuneIndex index;
+
+        @Setup
+        public void build() {
+            Random random = new Random(0);
+            TuneIndex.Rows rows = new TuneIndex.Rows(tunes);
+            for (int row = 0; row < tunes; row++) {
+                rows.paths[row] = "library/tune" + row + ".abc";
+                rows.titles[row] = "The " + DANCES[random.nextInt(DANCES.length)] + " of place"
+                        + random.nextInt(PLACES);
+                rows.composers[row] = random.nextInt(4) == 0 ? "Traditional" : "Composer " + random.nextInt(1000);
+                rows.keys[row] = KEYS[random.nextInt(KEYS.length)];
+                rows.meterNumerators[row] = 2 + random.nextInt(5);
+                rows.meterDenominators[row] = 4;
+                rows.tempos[row] = 60 + random.nextInt(121);
+                rows.voiceCounts[row] = 1 + random.nextInt(4);
+                rows.lowestNotes[row] = 36 + random.nextInt(24);
+                rows.highestNotes[row] = rows.lowestNotes[row] + 12 + random.nextInt(24);
+            }
+            index = new TuneIndex(rows);
+        }
+    }
+
+    // About one tune in 24 is in G, a fifth of those between 100 and 120 quarters a minute
+    @Benchmark
+    public int[] keyAndTempo(IndexState state) {
+        return state.index.search(new TuneIndex.Query().key("G").tempo(100, 120));
+    }
+
+    @Benchmark
+    public int[] keyMeterAndVoices(IndexState state) {
+        return state.index.search(new TuneIndex.Query().key("Em").meter(6, 4).voices(2, 3));
+    }
+
+    @Benchmark
+    public int[] rareWord(IndexState state) {
+        return state.index.search(new TuneIndex.Query().text("place4242"));
+    }
+
+    @Benchmark
+    public int[] rareWordAndCommonWord(IndexState state) {
+        return state.index.search(new TuneIndex.Query().text("reel place4242"));
+    }
+}
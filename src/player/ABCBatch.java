@@ -0,0 +1,372 @@
+package player;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import player.ABC_ADT.Bars;
+import player.ABC_ADT.NoteVisitor;
+import player.ABC_ADT.Voice;
+import player.Tokens.NoteToken;
+
+/**
+ * Converts every .abc file under a directory at once, splitting the files over a work stealing
+ * ForkJoinPool sized to the machine, a file that fails to read or parse is reported and skipped
+ * without stopping the others
+ *
+ * Note: every file gets its own Lexer, Parser and ABCMusic so no state is shared between workers
+ *
+ * Note: every file is read as UTF-8, whatever the default charset of the platform
+ */
+public class ABCBatch {
+    /**
+     * What is made of each parsed file
+     */
+    public enum Output {
+        // Only check that the file parses
+        VALIDATE,
+        // Report the Voices, Bars and notes of the file
+        STATS,
+        // Report the header fields of the file, reading none of its music
+        HEADER,
+        // Write a Standard MIDI File beside the others in the output directory
+        MIDI,
+        // Write the parsed notes as a ScoreFile beside the others in the output directory
+        SCORE
+    }
+
+    private final File root;
+    private final Output output;
+    private final File outputDirectory;
+    private final int parallelism;
+
+    /**
+     * Creates a batch over the files under root, using one worker per processor
+     *
+     * @param root, the directory searched for .abc files, or a single file
+     * @param output, what to make of each file
+     * @param outputDirectory, where MIDI or score files are written, mirroring the tree under root, unused otherwise
+     */
+    public ABCBatch(File root, Output output, File outputDirectory) {
+        this(root, output, outputDirectory, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism, the number of workers converting files at once
+     */
+    public ABCBatch(File root, Output output, File outputDirectory, int parallelism) {
+        if ((output == Output.MIDI || output == Output.SCORE) && outputDirectory == null) {
+            throw new IllegalArgumentException(output + " output needs an output directory");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Need at least one worker, got: " + parallelism);
+        }
+        this.root = root;
+        this.output = output;
+        this.outputDirectory = outputDirectory;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * The outcome of converting one file
+     */
+    public static class Result {
+        private final File file;
+        private final long bytes;
+        private final long nanos;
+        private final String report;
+        private final Throwable failure;
+
+        Result(File file, long bytes, long nanos, String report, Throwable failure) {
+            this.file = file;
+            this.bytes = bytes;
+            this.nanos = nanos;
+            this.report = report;
+            this.failure = failure;
+        }
+
+        public File getFile() {return file;}
+        public long getBytes() {return bytes;}
+        public long getNanos() {return nanos;}
+        /**
+         * @return The line reported for the file, its stats, its header or the file written, empty for validation
+         */
+        public String getReport() {return report;}
+        /**
+         * @return The Exception, or the StackOverflowError of a pathological file, that stopped the file being
+         * converted, or null if it succeeded
+         */
+        public Throwable getFailure() {return failure;}
+        public boolean succeeded() {return failure == null;}
+    }
+
+    /**
+     * The Results of a whole batch and its throughput
+     */
+    public static class Summary {
+        private final List<Result> results;
+        private final long elapsedNanos;
+        // The per file latencies, shortest first
+        private final long[] sortedNanos;
+
+        Summary(List<Result> results, long elapsedNanos) {
+            this.results = Collections.unmodifiableList(results);
+            this.elapsedNanos = elapsedNanos;
+            this.sortedNanos = new long[results.size()];
+            for (int i = 0; i < sortedNanos.length; i++) {
+                sortedNanos[i] = results.get(i).getNanos();
+            }
+            Arrays.sort(sortedNanos);
+        }
+
+        /**
+         * @return The Result of every file, in the order the files were found
+         */
+        public List<Result> getResults() {return results;}
+        public long getElapsedNanos() {return elapsedNanos;}
+
+        public int getFailures() {
+            int failures = 0;
+            for (Result result : results) {
+                if (!result.succeeded()) {
+                    failures++;
+                }
+            }
+            return failures;
+        }
+
+        public long getBytes() {
+            long bytes = 0;
+            for (Result result : results) {
+                bytes += result.getBytes();
+            }
+            return bytes;
+        }
+
+        public double getFilesPerSecond() {
+            return results.size() * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        public double getBytesPerSecond() {
+            return getBytes() * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        /**
+         * @param percentile, between 0 and 100
+         * @return The per file latency in nanoseconds below which that percentile of files finished,
+         *         by the nearest rank
+         */
+        public long getLatencyPercentile(double percentile) {
+            if (sortedNanos.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * sortedNanos.length);
+            return sortedNanos[Math.max(0, Math.min(sortedNanos.length, rank) - 1)];
+        }
+
+        @Override public String toString() {
+            return String.format("%d files (%d failed), %d bytes in %.3f s: %.1f files/s, %.1f KB/s, "
+                    + "latency p50 %.3f ms, p99 %.3f ms",
+                    results.size(), getFailures(), getBytes(), elapsedNanos / 1e9, getFilesPerSecond(),
+                    getBytesPerSecond() / 1024, getLatencyPercentile(50) / 1e6, getLatencyPercentile(99) / 1e6);
+        }
+    }
+
+    /**
+     * Converts every file, blocking until all are done
+     *
+     * @return The Summary of the batch
+     */
+    public Summary run() {
+        List<File> files = new ArrayList<File>();
+        findFiles(root, files);
+        Result[] results = new Result[files.size()];
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new ConvertTask(files, results, 0, files.size()));
+        } finally {
+            pool.shutdown();
+        }
+        return new Summary(Arrays.asList(results), System.nanoTime() - start);
+    }
+
+    // Adds every .abc file under the given file, in name order so batches are repeatable
+    static void findFiles(File file, List<File> files) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children == null) {
+                return;
+            }
+            Arrays.sort(children);
+            for (File child : children) {
+                findFiles(child, files);
+            }
+        } else if (file.getName().endsWith(".abc")) {
+            files.add(file);
+        }
+    }
+
+    /**
+     * Converts a range of the files, splitting it in half until single files remain so idle
+     * workers can steal the halves not yet started
+     */
+    private class ConvertTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<File> files;
+        private final Result[] results;
+        private final int from, to;
+
+        ConvertTask(List<File> files, Result[] results, int from, int to) {
+            this.files = files;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                for (int i = from; i < to; i++) {
+                    results[i] = convert(files.get(i));
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ConvertTask(files, results, from, middle),
+                        new ConvertTask(files, results, middle, to));
+            }
+        }
+    }
+
+    /**
+     * Lexes, parses and outputs a single file, catching anything that goes wrong with it. A file deep enough
+     * to overflow the worker's stack fails alone, its frames unwound by the time the error is caught; other
+     * Errors still abort the batch.
+     */
+    Result convert(File file) {
+        long start = System.nanoTime();
+        try {
+            ABCMusic music = null;
+            NoteStore store = null;
+            // Close the file even when the parse stops before its end
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+            try {
+                // A score is written from the columns alone, so the Voices are never built
+                if (output == Output.HEADER) {
+                    music = new ABCParser(new ABCLexer(reader)).parseHeaderOnly();
+                } else if (output == Output.SCORE) {
+                    store = new ABCParser(new ABCLexer(reader)).parseToStore();
+                } else {
+                    music = new ABCParser(new ABCLexer(reader)).parse();
+                }
+            } finally {
+                reader.close();
+            }
+            String report;
+            switch (output) {
+            case STATS:
+                report = stats(music);
+                break;
+            case HEADER:
+                report = ABCHeader.of(music).toString();
+                break;
+            case MIDI:
+                report = writeMidi(music, file).getPath();
+                break;
+            case SCORE:
+                File target = target(file, ".score");
+                ScoreFile.write(store, target);
+                report = target.getPath();
+                break;
+            default:
+                report = "";
+                break;
+            }
+            return new Result(file, file.length(), System.nanoTime() - start, report, null);
+        } catch (IOException e) {
+            return new Result(file, file.length(), System.nanoTime() - start, "", e);
+        } catch (RuntimeException e) {
+            return new Result(file, file.length(), System.nanoTime() - start, "", e);
+        } catch (StackOverflowError e) {
+            return new Result(file, file.length(), System.nanoTime() - start, "", e);
+        }
+    }
+
+    private static String stats(ABCMusic music) {
+        final int[] counts = new int[2];
+        NoteVisitor counter = new NoteVisitor() {
+            @Override
+            public void startBar(Bars bar) {
+                counts[0]++;
+            }
+
+            @Override
+            public void visitNote(NoteToken note) {
+                if (note.getType() == Tokens.Type.CHORD) {
+                    counts[1] += note.getElts().length;
+                } else if (note.getType() != Tokens.Type.REST) {
+                    counts[1]++;
+                }
+            }
+        };
+        for (Voice voice : music.VoicesList) {
+            voice.forEachNote(counter);
+        }
+        return music.VoicesList.size() + " voices, " + counts[0] + " bars, " + counts[1] + " notes";
+    }
+
+    // Writes the MIDI file for the given .abc file, at the same place under the output directory
+    private File writeMidi(ABCMusic music, File file) throws IOException {
+        File target = target(file, ".mid");
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(target));
+        try {
+            music.writeMidi(out);
+        } finally {
+            out.close();
+        }
+        return target;
+    }
+
+    // The file for the given .abc file with another extension, at the same place under the output directory
+    private File target(File file, String extension) throws IOException {
+        String relative = root.isDirectory()
+                ? root.toURI().relativize(file.toURI()).getPath()
+                : file.getName();
+        File target = new File(outputDirectory, relative.substring(0, relative.length() - ".abc".length()) + extension);
+        File parent = target.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Could not create the directory " + parent);
+        }
+        return target;
+    }
+
+    /**
+     * Prints the report of every file, then the failures and the Summary
+     *
+     * @param summary, the Summary of a finished batch
+     * @param out, where to print
+     */
+    public static void print(Summary summary, PrintStream out) {
+        for (Result result : summary.getResults()) {
+            if (result.succeeded()) {
+                out.println(result.getFile() + ": ok " + result.getReport());
+            } else {
+                out.println(result.getFile() + ": FAILED " + result.getFailure());
+            }
+        }
+        out.println(summary);
+    }
+}
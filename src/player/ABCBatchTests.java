@@ -0,0 +1,112 @@
+package player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that a batch converts every file under a directory and keeps failures to the files that fail
+ */
+public class ABCBatchTests {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void write(File file, String text) throws IOException {
+        FileWriter writer = new FileWriter(file);
+        writer.write(text);
+        writer.close();
+    }
+
+    @Test
+    //Every sample piece should validate
+    public void samplesValidateTest() {
+        ABCBatch.Summary summary = new ABCBatch(new File("./sample_abc"), ABCBatch.Output.VALIDATE, null).run();
+        assertEquals(15, summary.getResults().size());
+        assertEquals(0, summary.getFailures());
+        assertTrue(summary.getLatencyPercentile(50) <= summary.getLatencyPercentile(99));
+    }
+
+    @Test
+    //A broken file should fail alone, and MIDI files should mirror the tree of the inputs
+    public void failureIsolationTest() throws IOException {
+        File input = folder.newFolder("input");
+        File nested = new File(input, "nested");
+        assertTrue(nested.mkdir());
+        write(new File(input, "good.abc"), "X:1\nT:Good\nK:C\nC D E F|]\n");
+        write(new File(nested, "also_good.abc"), new ABCGenerator(1).setBars(8).setVoices(2).generate());
+        write(new File(input, "bad.abc"), "X:1\nT:Bad\nK:C\nC D E F G A B c d|]\n");
+        write(new File(input, "ignored.txt"), "not music");
+        File output = folder.newFolder("output");
+
+        ABCBatch.Summary summary = new ABCBatch(input, ABCBatch.Output.MIDI, output, 2).run();
+        assertEquals(3, summary.getResults().size());
+        assertEquals(1, summary.getFailures());
+        for (ABCBatch.Result result : summary.getResults()) {
+            if (result.getFile().getName().equals("bad.abc")) {
+                assertNotNull(result.getFailure());
+            } else {
+                assertTrue(result.succeeded());
+            }
+        }
+        assertTrue(new File(output, "good.mid").length() > 0);
+        assertTrue(new File(output, "nested/also_good.mid").length() > 0);
+        assertTrue(!new File(output, "bad.mid").exists());
+    }
+
+    /**
+     * Recurses until the stack overflows, then converts the file from the deepest frame that has room to
+     * call convert, so the parse runs out of stack inside it
+     */
+    private static ABCBatch.Result convertOnFullStack(ABCBatch batch, File file) {
+        try {
+            return convertOnFullStack(batch, file);
+        } catch (StackOverflowError e) {
+            return batch.convert(file);
+        }
+    }
+
+    @Test
+    //A file that overflows the stack should be recorded as that file's failure rather than abort the batch
+    public void stackOverflowTest() throws IOException {
+        File input = folder.newFolder("input");
+        File file = new File(input, "deep.abc");
+        write(file, new ABCGenerator(1).setBars(64).setVoices(2).generate());
+        ABCBatch batch = new ABCBatch(input, ABCBatch.Output.VALIDATE, null);
+        ABCBatch.Result result = convertOnFullStack(batch, file);
+        assertTrue(result.getFailure() instanceof StackOverflowError);
+        assertEquals(file, result.getFile());
+        // The same file converts once the stack has room again
+        assertTrue(batch.convert(file).succeeded());
+    }
+
+    @Test (timeout = 10000)
+    //A file whose header never reaches a Key should fail rather than stall its worker, in every output
+    public void missingKeyTest() throws IOException {
+        File input = folder.newFolder("input");
+        write(new File(input, "good.abc"), "X:1\nT:Good\nK:C\nC D E F|]\n");
+        write(new File(input, "no_key.abc"), "X:1\nT:t\nC D|\n");
+        write(new File(input, "no_music.abc"), "X:1\nT:t\nM:4/4\n");
+        for (ABCBatch.Output output : new ABCBatch.Output[] {ABCBatch.Output.VALIDATE, ABCBatch.Output.HEADER}) {
+            ABCBatch.Summary summary = new ABCBatch(input, output, null, 2).run();
+            assertEquals(3, summary.getResults().size());
+            assertEquals(2, summary.getFailures());
+            for (ABCBatch.Result result : summary.getResults()) {
+                assertEquals(result.getFile().getName().equals("good.abc"), result.succeeded());
+            }
+        }
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    //MIDI output has nowhere to go without a directory
+    public void midiNeedsDirectoryTest() {
+        new ABCBatch(new File("./sample_abc"), ABCBatch.Output.MIDI, null);
+    }
+}
@@ -0,0 +1,341 @@
+package player;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Keeps parsed Pieces keyed by the SHA-256 hash of their ABC text as UTF-8, see hash(), so a tune
+ * played again skips lexing and parsing entirely, whichever file or songbook it was read from
+ *
+ * Each Piece weighs the size in UTF-8 bytes of the text it was parsed from, and the Pieces held in memory
+ * are bounded by their total weight, the least recently used going first once the bound is
+ * passed; with a directory given each parsed Piece is also saved there as <key>.ser along with
+ * its weight and read back when it is no longer in memory, the saved files being bounded by
+ * their total size in bytes, the least recently saved or read going first
+ *
+ * Note: an ABCMusic is never changed once parsed, so the same cached Piece is handed to every
+ * caller, two threads missing on the same text at once may both parse it
+ */
+public final class ABCCache {
+    private static final String SUFFIX = ".ser";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // The total length of the texts of the Pieces held in memory may not pass this
+    private final long maxWeight;
+    // Where Pieces are saved, null when there is no disk tier
+    private final File directory;
+    // The total size of the files saved in the directory may not pass this for long
+    private final long maxDiskBytes;
+    // In order of use, least recent first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long weight;
+    private long hits;
+    private long diskHits;
+    private long misses;
+    private long evictions;
+    private long diskBytes;
+    private long diskEvictions;
+
+    /*
+     * Rep invariant:
+     *   maxWeight >= 0, maxDiskBytes >= 0,
+     *   weight is the sum of the weights of entries, at most maxWeight,
+     *   diskBytes >= 0
+     */
+
+    private static class Entry {
+        private final ABCMusic music;
+        private final long weight;
+
+        private Entry(ABCMusic music, long weight){
+            this.music = music;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * A cache held in memory alone
+     *
+     * @param maxWeight, the largest total size in bytes of the texts whose Pieces are kept
+     */
+    public ABCCache(long maxWeight){
+        this(maxWeight, null);
+    }
+
+    /**
+     * @param maxWeight, the largest total size in bytes of the texts whose Pieces are kept in memory
+     * @param directory, where every parsed Piece is saved, created if need be, or null to keep
+     * Pieces in memory alone
+     */
+    public ABCCache(long maxWeight, File directory){
+        this(maxWeight, directory, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxWeight, the largest total size in bytes of the texts whose Pieces are kept in memory
+     * @param directory, where every parsed Piece is saved, created if need be, or null to keep
+     * Pieces in memory alone
+     * @param maxDiskBytes, the largest total size of the files saved in the directory, the
+     * least recently saved or read being deleted once it is passed
+     */
+    public ABCCache(long maxWeight, File directory, long maxDiskBytes){
+        if(maxWeight < 0){
+            throw new IllegalArgumentException("Cannot hold a negative weight: " + maxWeight);
+        }
+        if(maxDiskBytes < 0){
+            throw new IllegalArgumentException("Cannot save a negative number of bytes: " + maxDiskBytes);
+        }
+        if(directory != null && !directory.isDirectory() && !directory.mkdirs()){
+            throw new IllegalArgumentException("Cannot use as a cache directory: " + directory);
+        }
+        this.maxWeight = maxWeight;
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        if(directory != null){
+            // Pieces saved by an earlier cache count against the bound too
+            for(File file : savedFiles()){
+                diskBytes += file.length();
+            }
+        }
+        checkRep();
+    }
+
+    /**
+     * @param text, the ABC text of a Piece
+     * @return The Piece as parsed from the text, parsed only if it is not already cached
+     */
+    public ABCMusic parse(String text){
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        String key = hash(bytes);
+        ABCMusic music = get(key);
+        if(music == null){
+            music = new ABCParser(new ABCLexer(text)).parse();
+            put(key, bytes.length, music);
+        }
+        return music;
+    }
+
+    /**
+     * Finds the Piece of a key in memory, then on disk, each counting as a hit, or else a miss
+     *
+     * @param key, the hash of the text of a Piece, see hash()
+     * @return The cached Piece of the key, null if it is not cached
+     */
+    public ABCMusic get(String key){
+        synchronized(this){
+            Entry entry = entries.get(key);
+            if(entry != null){
+                hits++;
+                return entry.music;
+            }
+        }
+        Entry entry = load(key);
+        synchronized(this){
+            if(entry == null){
+                misses++;
+                return null;
+            }
+            diskHits++;
+            add(key, entry);
+            return entry.music;
+        }
+    }
+
+    /**
+     * Caches a parsed Piece, saving it to disk if there is a directory
+     *
+     * @param key, the hash of the text of the Piece, see hash()
+     * @param weight, the size in UTF-8 bytes of the text the Piece was parsed from, >= 0
+     * @param music, the complete Piece parsed from that text
+     */
+    public void put(String key, long weight, ABCMusic music){
+        if(weight < 0){
+            throw new IllegalArgumentException("A Piece cannot weigh less than nothing: " + weight);
+        }
+        Entry entry = new Entry(music, weight);
+        synchronized(this){
+            add(key, entry);
+        }
+        save(key, entry);
+    }
+
+    // Adds an entry as the most recently used, then evicts until the weight fits
+    private void add(String key, Entry entry){
+        if(entry.weight > maxWeight){
+            return;
+        }
+        Entry old = entries.put(key, entry);
+        weight += entry.weight - (old == null ? 0 : old.weight);
+        for(Iterator<Entry> i = entries.values().iterator(); weight > maxWeight; ){
+            weight -= i.next().weight;
+            i.remove();
+            evictions++;
+        }
+        checkRep();
+    }
+
+    // Reads a saved Piece and its weight, null if there is none or it cannot be read
+    private Entry load(String key){
+        if(directory == null){
+            return null;
+        }
+        File file = new File(directory, key + SUFFIX);
+        if(!file.isFile()){
+            return null;
+        }
+        try(ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            long weight = in.readLong();
+            Entry entry = new Entry((ABCMusic) in.readObject(), weight);
+            // A Piece read back is the most recently used on disk as well
+            file.setLastModified(System.currentTimeMillis());
+            return entry;
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            // A damaged or outdated file is parsed again and overwritten
+            return null;
+        }
+    }
+
+    // Saves a Piece through a temporary file so a reader never sees half of it
+    private void save(String key, Entry entry){
+        if(directory == null){
+            return;
+        }
+        try{
+            File temporary = File.createTempFile(key, ".tmp", directory);
+            try(ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))){
+                out.writeLong(entry.weight);
+                out.writeObject(entry.music);
+            } catch (IOException e) {
+                temporary.delete();
+                throw e;
+            }
+            File file = new File(directory, key + SUFFIX);
+            long replaced = file.length();
+            Files.move(temporary.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized(this){
+                diskBytes += file.length() - replaced;
+                if(diskBytes > maxDiskBytes){
+                    trim();
+                }
+            }
+        } catch (IOException e) {
+            // The Piece is still held in memory, it is only parsed again once evicted
+            e.printStackTrace();
+        }
+    }
+
+    // Deletes the least recently saved or read files until those left fit within maxDiskBytes
+    private void trim(){
+        File[] files = savedFiles();
+        long[] modified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        diskBytes = 0;
+        for(int i = 0; i < files.length; i++){
+            // Taken once, as a file read back meanwhile would change its order while sorting
+            modified[i] = files[i].lastModified();
+            order[i] = i;
+            diskBytes += files[i].length();
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> modified[i]));
+        for(int i = 0; i < order.length && diskBytes > maxDiskBytes; i++){
+            File file = files[order[i]];
+            long length = file.length();
+            if(file.delete()){
+                diskBytes -= length;
+                diskEvictions++;
+            }
+        }
+        checkRep();
+    }
+
+    private File[] savedFiles(){
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        return files == null ? new File[0] : files;
+    }
+
+    /**
+     * @return The number of requests answered from memory
+     */
+    public synchronized long getHits() {return hits;}
+    /**
+     * @return The number of requests answered by reading a saved Piece
+     */
+    public synchronized long getDiskHits() {return diskHits;}
+    /**
+     * @return The number of requests for a key that was not cached
+     */
+    public synchronized long getMisses() {return misses;}
+    /**
+     * @return The number of Pieces dropped from memory to make room for others
+     */
+    public synchronized long getEvictions() {return evictions;}
+    /**
+     * @return The number of Pieces held in memory
+     */
+    public synchronized int size() {return entries.size();}
+    /**
+     * @return The total weight of the Pieces held in memory
+     */
+    public synchronized long getWeight() {return weight;}
+    /**
+     * @return The number of saved Pieces deleted to keep the directory within its bound
+     */
+    public synchronized long getDiskEvictions() {return diskEvictions;}
+    /**
+     * @return The total size in bytes of the Pieces saved in the directory
+     */
+    public synchronized long getDiskBytes() {return diskBytes;}
+
+    /**
+     * @param text, the ABC text of a Piece
+     * @return The SHA-256 hash of the text as UTF-8, in hexadecimal
+     */
+    public static String hash(String text){
+        return hash(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param bytes, the ABC text of a Piece as UTF-8, such as the whole of an .abc file
+     * @return The SHA-256 hash of the bytes, in hexadecimal, the same as hash() of the text they encode
+     */
+    public static String hash(byte[] bytes){
+        try{
+            return hex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String hex(byte[] digest){
+        char[] hex = new char[digest.length * 2];
+        for(int i = 0; i < digest.length; i++){
+            hex[2 * i] = HEX[(digest[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    private void checkRep(){
+        assert maxWeight >= 0 : "the bound on the weight should not be negative";
+        assert maxDiskBytes >= 0 : "the bound on the saved bytes should not be negative";
+        assert diskBytes >= 0 : "the saved bytes should not be negative";
+        assert weight >= 0 && weight <= maxWeight : "the weight held should be within its bound";
+    }
+}
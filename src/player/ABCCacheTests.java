@@ -0,0 +1,163 @@
+package player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static player.TestMusic.render;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that an ABCCache parses each text once, evicts the least recently used Piece and
+ * reads back the Pieces it saved
+ */
+public class ABCCacheTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String piece(int seed) {
+        return new ABCGenerator(seed).setBars(20).setVoices(2).generate();
+    }
+
+    @Test
+    //The same text should be parsed once and handed back as the same Piece after
+    public void hitTest() {
+        ABCCache cache = new ABCCache(1 << 20);
+        String text = piece(1);
+        ABCMusic first = cache.parse(text);
+        assertSame(first, cache.parse(new String(text)));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.size());
+        assertEquals(text.length(), cache.getWeight());
+        assertNull(cache.get(ABCCache.hash(piece(2))));
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    //Once full the Piece least recently used should be dropped first
+    public void evictionTest() {
+        String a = piece(1), b = piece(2), c = piece(3);
+        ABCCache cache = new ABCCache(a.length() + b.length() + c.length() - 1);
+        ABCMusic pieceA = cache.parse(a);
+        cache.parse(b);
+        assertSame(pieceA, cache.parse(a));
+        cache.parse(c);
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.size());
+        assertEquals(a.length() + c.length(), cache.getWeight());
+        assertSame(pieceA, cache.get(ABCCache.hash(a)));
+        assertNull(cache.get(ABCCache.hash(b)));
+    }
+
+    @Test
+    //A Piece whose text alone passes the bound should not be kept
+    public void oversizedTest() {
+        String text = piece(1);
+        ABCCache cache = new ABCCache(text.length() - 1);
+        cache.parse(text);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    //A Piece saved by one cache should be read back by another on the same directory and play the same
+    public void diskTest() throws IOException {
+        File directory = folder.newFolder();
+        String text = new ABCGenerator(4).setBars(60).setVoices(3).setRepeatDensity(0.3)
+                .setChordDensity(0.3).setTupletDensity(0.2).generate();
+        ABCMusic parsed = new ABCCache(1 << 20, directory).parse(text);
+        ABCCache reopened = new ABCCache(1 << 20, directory);
+        ABCMusic loaded = reopened.get(ABCCache.hash(text));
+        assertNotNull(loaded);
+        assertEquals(1, reopened.getDiskHits());
+        assertEquals(0, reopened.getMisses());
+        assertEquals(render(parsed), render(loaded));
+        assertEquals(parsed.toString(), loaded.toString());
+        // Once read the Piece is held in memory at the weight it was saved with
+        assertSame(loaded, reopened.get(ABCCache.hash(text)));
+        assertEquals(1, reopened.getHits());
+        assertEquals(text.length(), reopened.getWeight());
+    }
+
+    @Test
+    //Once the saved Pieces pass their bound the least recently saved or read should be deleted
+    public void diskBoundTest() throws IOException {
+        File directory = folder.newFolder();
+        String a = piece(1), b = piece(2), c = piece(3);
+        ABCCache sizer = new ABCCache(0, folder.newFolder());
+        sizer.parse(a);
+        long bytes = sizer.getDiskBytes();
+        assertTrue(bytes > 0);
+        // Room for two of the Pieces, which are all close in size
+        ABCCache cache = new ABCCache(0, directory, bytes * 5 / 2);
+        cache.parse(a);
+        cache.parse(b);
+        assertEquals(0, cache.getDiskEvictions());
+        new File(directory, ABCCache.hash(a) + ".ser").setLastModified(System.currentTimeMillis() - 20000);
+        new File(directory, ABCCache.hash(b) + ".ser").setLastModified(System.currentTimeMillis() - 30000);
+        // Reading a back makes b the oldest on disk
+        assertNotNull(cache.get(ABCCache.hash(a)));
+        cache.parse(c);
+        assertEquals(1, cache.getDiskEvictions());
+        assertTrue(cache.getDiskBytes() <= bytes * 5 / 2);
+        ABCCache reopened = new ABCCache(0, directory, bytes * 5 / 2);
+        assertEquals(cache.getDiskBytes(), reopened.getDiskBytes());
+        assertNull(reopened.get(ABCCache.hash(b)));
+        assertNotNull(reopened.get(ABCCache.hash(a)));
+        assertNotNull(reopened.get(ABCCache.hash(c)));
+    }
+
+    @Test
+    //A damaged saved Piece should count as a miss and be parsed again
+    public void damagedFileTest() throws IOException {
+        File directory = folder.newFolder();
+        String text = piece(5);
+        try (Writer out = new FileWriter(new File(directory, ABCCache.hash(text) + ".ser"))) {
+            out.write("not a piece");
+        }
+        ABCCache cache = new ABCCache(1 << 20, directory);
+        assertNull(cache.get(ABCCache.hash(text)));
+        ABCMusic parsed = cache.parse(text);
+        assertEquals(render(parsed), render(new ABCCache(1 << 20, directory).parse(text)));
+    }
+
+    @Test
+    //The same text should share one Piece from any file or string, weighed as the size of the file
+    public void bytesTest() throws IOException {
+        String text = piece(6);
+        File first = folder.newFile("first.abc"), second = folder.newFile("second.abc");
+        for (File file : new File[] {first, second}) {
+            Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        }
+        String key = ABCCache.hash(Files.readAllBytes(first.toPath()));
+        assertEquals(ABCCache.hash(text), key);
+        assertEquals(key, ABCCache.hash(Files.readAllBytes(second.toPath())));
+        ABCCache cache = new ABCCache(1 << 20);
+        ABCMusic parsed = cache.parse(text);
+        assertSame(parsed, cache.get(key));
+        assertEquals(Files.size(first.toPath()), cache.getWeight());
+        Files.write(second.toPath(), piece(7).getBytes(StandardCharsets.UTF_8));
+        assertNull(cache.get(ABCCache.hash(Files.readAllBytes(second.toPath()))));
+    }
+
+    @Test
+    //The hash should be the SHA-256 of the text as UTF-8
+    public void hashTest() {
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", ABCCache.hash(""));
+        assertEquals(64, ABCCache.hash(piece(1)).length());
+        assertEquals(ABCCache.hash("Caf\u00e9".getBytes(StandardCharsets.UTF_8)), ABCCache.hash("Caf\u00e9"));
+    }
+}
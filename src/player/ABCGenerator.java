@@ -0,0 +1,287 @@
+package player;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Generates random but valid .abc files of any size within the ABC Grammar understood by the
+ * ABCParser, for scaling benchmarks and stress tests that the small sample_abc files cannot drive
+ *
+ * Every piece is in 4/4 with a default length of 1/8, each line holds four Bars of one Voice and
+ * all Voices share the same line structure so they stay in step, the same seed and settings always
+ * give back the same piece
+ *
+ * Note: density settings are the chance of each element of a Bar being of that kind
+ */
+public class ABCGenerator {
+    // Default length units in a single 4/4 Bar at L:1/8
+    private static final int UNITS_PER_BAR = 8;
+    private static final int BARS_PER_LINE = 4;
+    // Key signatures the ABCMusic knows how to play, minor keys take their mode before the accidental
+    static final String[] KEYS = {"C", "G", "D", "A", "E", "B", "F#", "C#", "F", "Bb", "Eb",
+        "Ab", "Db", "Gb", "Am", "Em", "Bm", "Fm#", "Cm#", "Gm#", "Dm", "Gm", "Cm", "Fm", "Bmb", "Emb"};
+    // Double sharps and flats are left out as the ABCLexer cannot build them
+    private static final String[] ACCIDENTALS = {"^", "_", "="};
+    private static final String BASENOTES = "CDEFGAB";
+
+    private final long seed;
+    private int voices = 1;
+    private int bars = 64;
+    private double chordDensity = 0.1;
+    private double tupletDensity = 0.05;
+    private double accidentalDensity = 0.1;
+    private double repeatDensity = 0.2;
+    private String key;
+
+    /**
+     * Creates a generator of single Voice pieces with the default densities
+     *
+     * @param seed, the seed from which every choice of the generator is drawn
+     */
+    public ABCGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param voices, the number of Voices in the piece
+     */
+    public ABCGenerator setVoices(int voices) {
+        if (voices < 1) {
+            throw new IllegalArgumentException("A piece needs at least one Voice, got: " + voices);
+        }
+        this.voices = voices;
+        return this;
+    }
+
+    /**
+     * @param bars, the number of Bars written for each Voice, rounded up to whole lines of four Bars
+     */
+    public ABCGenerator setBars(int bars) {
+        if (bars < 1) {
+            throw new IllegalArgumentException("A piece needs at least one Bar, got: " + bars);
+        }
+        this.bars = bars;
+        return this;
+    }
+
+    /**
+     * @param density, the chance of each element of a Bar being a Chord
+     */
+    public ABCGenerator setChordDensity(double density) {
+        this.chordDensity = checkDensity(density);
+        return this;
+    }
+
+    /**
+     * @param density, the chance of each element of a Bar being a Tuplet
+     */
+    public ABCGenerator setTupletDensity(double density) {
+        this.tupletDensity = checkDensity(density);
+        return this;
+    }
+
+    /**
+     * @param density, the chance of each note carrying an explicit accidental
+     */
+    public ABCGenerator setAccidentalDensity(double density) {
+        this.accidentalDensity = checkDensity(density);
+        return this;
+    }
+
+    /**
+     * @param density, the chance of each line being a repeated section, half of which have first and second endings
+     */
+    public ABCGenerator setRepeatDensity(double density) {
+        this.repeatDensity = checkDensity(density);
+        return this;
+    }
+
+    /**
+     * @param key, the Key of the piece as written in the K: field, or null for one picked from the seed
+     */
+    public ABCGenerator setKey(String key) {
+        this.key = key;
+        return this;
+    }
+
+    private static double checkDensity(double density) {
+        if (density < 0 || density > 1) {
+            throw new IllegalArgumentException("Densities are chances between 0 and 1, got: " + density);
+        }
+        return density;
+    }
+
+    /**
+     * @return The whole generated piece
+     */
+    public String generate() {
+        StringBuilder output = new StringBuilder();
+        try {
+            write(output);
+        } catch (IOException e) {
+            // A StringBuilder never throws
+            throw new RuntimeException(e);
+        }
+        return output.toString();
+    }
+
+    /**
+     * Writes the generated piece line by line, so pieces far larger than memory can be made
+     *
+     * @param output, where to write the .abc text
+     */
+    public void write(Appendable output) throws IOException {
+        Random random = new Random(seed);
+        output.append("X:").append(Long.toString(seed & 0x7fffffffL)).append('\n');
+        output.append("T:Generated piece ").append(Long.toString(seed)).append('\n');
+        output.append("C:ABCGenerator\n");
+        if (voices > 1) {
+            for (int voice = 1; voice <= voices; voice++) {
+                output.append("V:").append(Integer.toString(voice)).append('\n');
+            }
+        }
+        output.append("M:4/4\n");
+        output.append("L:1/8\n");
+        output.append("Q:").append(Integer.toString(60 + random.nextInt(121))).append('\n');
+        output.append("K:").append(key != null ? key : KEYS[random.nextInt(KEYS.length)]).append('\n');
+
+        int lines = (bars + BARS_PER_LINE - 1) / BARS_PER_LINE;
+        StringBuilder line = new StringBuilder();
+        for (int index = 0; index < lines; index++) {
+            // Every Voice gets the same kind of line so the Voices repeat together,
+            // the music cannot open on a barline so the first line is never repeated
+            double kind = index == 0 ? 1 : random.nextDouble();
+            boolean repeat = kind < repeatDensity;
+            boolean endings = kind < repeatDensity / 2;
+            boolean last = index == lines - 1;
+            for (int voice = 1; voice <= voices; voice++) {
+                line.setLength(0);
+                if (voices > 1) {
+                    output.append("V:").append(Integer.toString(voice)).append('\n');
+                }
+                if (endings) {
+                    // |: a b |[1 c :|[2 d |]
+                    line.append("|: ");
+                    appendBar(line, random).append(" | ");
+                    appendBar(line, random).append(" |[1 ");
+                    appendBar(line, random).append(" :|[2 ");
+                    appendBar(line, random).append(" |]");
+                } else {
+                    if (repeat) {
+                        line.append("|: ");
+                    }
+                    for (int bar = 0; bar < BARS_PER_LINE; bar++) {
+                        appendBar(line, random);
+                        if (bar < BARS_PER_LINE - 1) {
+                            line.append(" | ");
+                        }
+                    }
+                    if (repeat) {
+                        line.append(" :|");
+                    } else if (last) {
+                        line.append(" |]");
+                    } else if (index % 4 == 3) {
+                        line.append(" ||");
+                    } else {
+                        line.append(" |");
+                    }
+                }
+                output.append(line).append('\n');
+            }
+        }
+    }
+
+    /**
+     * Appends a single full Bar of notes, rests, chords and tuplets
+     */
+    private StringBuilder appendBar(StringBuilder line, Random random) {
+        int units = UNITS_PER_BAR;
+        while (units > 0) {
+            double kind = random.nextDouble();
+            if (kind < tupletDensity && units >= 3) {
+                // A tuplet of plain notes, duplets and quadruplets take 3 units, triplets take 2
+                int size = 2 + random.nextInt(3);
+                line.append('(').append(size);
+                for (int i = 0; i < size; i++) {
+                    appendPitch(line, random);
+                }
+                units -= size == 3 ? 2 : 3;
+            } else {
+                int length = 1 + random.nextInt(Math.min(units, 4));
+                if (kind < tupletDensity + chordDensity) {
+                    int size = 2 + random.nextInt(3);
+                    line.append('[');
+                    for (int i = 0; i < size; i++) {
+                        appendPitch(line, random);
+                        appendLength(line, length);
+                    }
+                    line.append(']');
+                } else if (kind < tupletDensity + chordDensity + 0.1) {
+                    line.append('z');
+                    appendLength(line, length);
+                } else {
+                    appendPitch(line, random);
+                    appendLength(line, length);
+                }
+                units -= length;
+            }
+            if (units > 0) {
+                line.append(' ');
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Appends a basenote with its accidental and octave, somewhere between C, and c'
+     */
+    private void appendPitch(StringBuilder line, Random random) {
+        if (random.nextDouble() < accidentalDensity) {
+            line.append(ACCIDENTALS[random.nextInt(ACCIDENTALS.length)]);
+        }
+        char note = BASENOTES.charAt(random.nextInt(BASENOTES.length()));
+        switch (random.nextInt(4)) {
+        case 0:
+            line.append(note).append(',');
+            break;
+        case 1:
+            line.append(note);
+            break;
+        case 2:
+            line.append(Character.toLowerCase(note));
+            break;
+        default:
+            line.append(Character.toLowerCase(note)).append('\'');
+            break;
+        }
+    }
+
+    private static void appendLength(StringBuilder line, int length) {
+        if (length > 1) {
+            line.append(length);
+        }
+    }
+
+    /**
+     * Writes a generated piece to a file
+     *
+     * Usage: ABCGenerator file bars [voices] [seed]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ABCGenerator file bars [voices] [seed]");
+            return;
+        }
+        ABCGenerator generator = new ABCGenerator(args.length > 3 ? Long.parseLong(args[3]) : 0)
+                .setBars(Integer.parseInt(args[1]))
+                .setVoices(args.length > 2 ? Integer.parseInt(args[2]) : 1);
+        BufferedWriter writer = new BufferedWriter(new FileWriter(args[0]));
+        try {
+            generator.write(writer);
+        } finally {
+            writer.close();
+        }
+    }
+}
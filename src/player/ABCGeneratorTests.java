@@ -0,0 +1,131 @@
+package player;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import player.ABC_ADT.Bars;
+import sound.NoteSink;
+
+/**
+ * Tests that generated pieces are valid for the ABCParser, parsing them as the Keys and settings
+ * they were generated with, and that parsing them scales linearly with their size
+ *
+ * Note: the GeneratedBenchmark measures the parse time itself, this only guards against a
+ * quadratic parse, with a bound loose enough for a busy machine
+ */
+public class ABCGeneratorTests {
+
+    @Test
+    //Tests that pieces across a spread of settings parse and render with the Voices asked for
+    public void generatedPiecesParseTest() {
+        for (int seed = 0; seed < 100; seed++) {
+            ABCGenerator generator = new ABCGenerator(seed)
+                    .setBars(1 + seed % 37)
+                    .setVoices(1 + seed % 4)
+                    .setChordDensity((seed % 5) / 5.0)
+                    .setTupletDensity((seed % 3) / 4.0)
+                    .setAccidentalDensity((seed % 4) / 3.0)
+                    .setRepeatDensity((seed % 7) / 6.0);
+            ABCMusic music = new ABCParser(new ABCLexer(generator.generate())).parse();
+            assertEquals(1 + seed % 4, music.VoicesList.size());
+            render(music);
+        }
+    }
+
+    @Test
+    //Tests that the same seed and settings always give the same piece, and other seeds do not
+    public void sameSeedTest() {
+        String first = new ABCGenerator(42).setBars(100).setVoices(3).generate();
+        String second = new ABCGenerator(42).setBars(100).setVoices(3).generate();
+        String other = new ABCGenerator(43).setBars(100).setVoices(3).generate();
+        assertEquals(first, second);
+        assertTrue(!first.equals(other));
+    }
+
+    @Test
+    //Tests that repeats with endings are generated and played twice with both endings
+    public void repeatsTest() {
+        String piece = new ABCGenerator(5).setBars(40).setRepeatDensity(1).generate();
+        assertTrue(piece.contains("|:"));
+        assertTrue(piece.contains("|[1"));
+        assertTrue(piece.contains(":|[2"));
+        ABCMusic music = new ABCParser(new ABCLexer(piece)).parse();
+        int meters = 0;
+        for (Bars bar : music.VoicesList.get(0).BarsList) {
+            meters += bar.MetersList.size();
+        }
+        // Every repeated line after the first plays more Bars than are written
+        assertTrue(meters > 40);
+    }
+
+    @Test
+    //Tests that every Key the generator writes parses as that Key, a minor Key keeping its accidental
+    public void keysTest() {
+        for (String key : ABCGenerator.KEYS) {
+            ABCMusic music = new ABCParser(new ABCLexer(new ABCGenerator(1).setBars(2).setKey(key).generate())).parse();
+            // The header names a minor Key with its accidental before its mode, as in F#m
+            assertEquals(key.replace("m#", "#m").replace("mb", "bm"), ABCHeader.of(music).getKey());
+        }
+        // A minor Key shares the signature of its relative major
+        String[][] relatives = {{"Fm#", "A"}, {"Cm#", "E"}, {"Gm#", "B"}, {"Bmb", "Db"}, {"Emb", "Gb"}};
+        for (String[] relative : relatives) {
+            assertArrayEquals(keySignature(relative[1]), keySignature(relative[0]));
+        }
+    }
+
+    @Test
+    //Tests that the time to parse each bar stays nearly flat as a piece grows sixteen fold, where a quadratic parse would take sixteen times as long
+    public void parseTimeGrowsLinearlyTest() {
+        int[] sizes = {500, 2000, 8000};
+        String[] pieces = new String[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            pieces[i] = new ABCGenerator(7).setBars(sizes[i]).setVoices(2).generate();
+        }
+        // Warm up so the first timings are not the JIT
+        for (int i = 0; i < 5; i++) {
+            parseTime(pieces[0]);
+        }
+        double[] perBar = new double[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            perBar[i] = (double) medianParseTime(pieces[i], 3) / sizes[i];
+        }
+        for (int i = 1; i < sizes.length; i++) {
+            assertTrue("Parse time per bar grew from " + perBar[0] + "ns at " + sizes[0] + " bars to " + perBar[i]
+                    + "ns at " + sizes[i] + " bars", perBar[i] < perBar[0] * 4);
+        }
+    }
+
+    private static long medianParseTime(String piece, int runs) {
+        long[] times = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            times[i] = parseTime(piece);
+        }
+        Arrays.sort(times);
+        return times[runs / 2];
+    }
+
+    private static long parseTime(String piece) {
+        long start = System.nanoTime();
+        new ABCParser(new ABCLexer(piece)).parse();
+        return System.nanoTime() - start;
+    }
+
+    private static byte[] keySignature(String key) {
+        return new ABCParser(new ABCLexer("X:1\nT:t\nK:" + key + "\nC|]\n")).parse().getKeySignature();
+    }
+
+    // Renders every Voice, throwing if any note cannot be pitched
+    private static void render(ABCMusic music) {
+        NoteSink sink = new NoteSink() {
+            @Override
+            public void addNote(int note, int startTick, int numTicks) {
+            }
+        };
+        new ABCRenderer(music).render(sink);
+    }
+}
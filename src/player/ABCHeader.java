@@ -0,0 +1,114 @@
+package player;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import player.Tokens.NoteToken;
+
+/**
+ * The header fields of a .abc file, X, T, C, M, L, Q and K along with the number of Voices it
+ * names, read without lexing any of the music after the Key
+ *
+ * Fields left out of the file hold the defaults the ABCParser gives them
+ */
+public final class ABCHeader {
+    private final String id, title, composer, key;
+    private final int meterNumerator, meterDenominator;
+    private final int lengthNumerator, lengthDenominator;
+    private final int tempo;
+    private final int voiceCount;
+
+    private ABCHeader(ABCMusic music) {
+        this.id = music.getID();
+        this.title = music.getTitle();
+        this.composer = music.getName();
+        this.meterNumerator = music.getMeterSum()[0];
+        this.meterDenominator = music.getMeterSum()[1];
+        this.lengthNumerator = music.getNoteLength()[0];
+        this.lengthDenominator = music.getNoteLength()[1];
+        this.tempo = music.getTempo();
+        this.voiceCount = music.VoicesList.size();
+        this.key = keyName(music.getKey());
+    }
+
+    /**
+     * @param music, a parsed Piece, or the header of one
+     * @return The header fields of the Piece
+     */
+    public static ABCHeader of(ABCMusic music) {
+        return new ABCHeader(music);
+    }
+
+    /**
+     * Reads the header of a .abc file, stopping once the line of its Key is read
+     *
+     * @param input, the .abc text, read only as far as the end of the header
+     * @return The header fields of the file
+     * @throws IllegalArgumentException if the header breaks the ABC Grammar
+     */
+    public static ABCHeader read(Reader input) {
+        return new ABCHeader(new ABCParser(new ABCLexer(input)).parseHeaderOnly());
+    }
+
+    /**
+     * @param file, the .abc file, read as UTF-8 and closed once its header is read
+     * @return The header fields of the file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the header breaks the ABC Grammar
+     */
+    public static ABCHeader read(File file) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        try {
+            return read(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    // The Key with its accidental before its mode, such as C, F#m or Bbm, as K:Fm# is usually spelled
+    private static String keyName(NoteToken key) {
+        StringBuilder name = new StringBuilder().append(key.getNote());
+        if (key.getAccidental() == 1) {
+            name.append('#');
+        } else if (key.getAccidental() == -1) {
+            name.append('b');
+        }
+        if (key.getOctave() == -1) {
+            name.append('m');
+        }
+        return name.toString();
+    }
+
+    public String getID() {return id;}
+    public String getTitle() {return title;}
+    /**
+     * @return The Composer of the piece, "Unknown" when the header names none
+     */
+    public String getComposer() {return composer;}
+    public int getMeterNumerator() {return meterNumerator;}
+    public int getMeterDenominator() {return meterDenominator;}
+    public int getLengthNumerator() {return lengthNumerator;}
+    public int getLengthDenominator() {return lengthDenominator;}
+    public int getTempo() {return tempo;}
+    /**
+     * @return The Key with its accidental before its mode, such as C, F#m or Bbm, so K:Fm# gives F#m
+     */
+    public String getKey() {return key;}
+    /**
+     * @return The number of Voices of the piece, 1 when the header names none
+     */
+    public int getVoiceCount() {return voiceCount;}
+
+    /**
+     * @return The fields on one line, as X:1|T:Title|C:Composer|M:4/4|L:1/8|Q:100|K:C|V:1
+     */
+    @Override public String toString() {
+        return "X:" + id + "|T:" + title + "|C:" + composer + "|M:" + meterNumerator + "/" + meterDenominator
+                + "|L:" + lengthNumerator + "/" + lengthDenominator + "|Q:" + tempo + "|K:" + key + "|V:" + voiceCount;
+    }
+}
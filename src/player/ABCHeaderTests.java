@@ -0,0 +1,121 @@
+package player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that the header read alone holds the fields of a full parse, without reading the music
+ */
+public class ABCHeaderTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Counts the characters drawn from the Reader it wraps
+    private static class CountingReader extends FilterReader {
+        long count;
+
+        CountingReader(String text) {
+            super(new StringReader(text));
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            count += Math.max(0, read);
+            return read;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            count += read < 0 ? 0 : 1;
+            return read;
+        }
+    }
+
+    @Test
+    //Every sample piece should give the same header read alone as parsed whole
+    public void samplesTest() throws IOException {
+        String[] files = {"fur_elise", "harryp", "invention", "little_night_music", "paddy", "piece1", "piece2",
+                "prelude", "scale", "smoothcriminal", "user1", "user2", "user3", "user4", "waltzing"};
+        for (String file : files) {
+            ABCMusic music = new ABCParser(new ABCLexer(new FileReader("./sample_abc/" + file + ".abc"))).parse();
+            assertEquals(ABCHeader.of(music).toString(), ABCHeader.read(new File("./sample_abc/" + file + ".abc")).toString());
+        }
+    }
+
+    @Test
+    //Each field should be read, and those left out take the defaults of the parser
+    public void fieldsTest() {
+        ABCHeader header = ABCHeader.read(new StringReader(
+                "X:7\nT:Title\nC:Someone\nM:3/4\nL:1/4\nQ:90\nV:1\nV:2\nK:Em\nV:1\nC D E|]\nV:2\nC D E|]\n"));
+        assertEquals("7", header.getID());
+        assertEquals("Title", header.getTitle());
+        assertEquals("Someone", header.getComposer());
+        assertEquals(3, header.getMeterNumerator());
+        assertEquals(4, header.getMeterDenominator());
+        assertEquals(1, header.getLengthNumerator());
+        assertEquals(4, header.getLengthDenominator());
+        assertEquals(90, header.getTempo());
+        assertEquals("Em", header.getKey());
+        assertEquals(2, header.getVoiceCount());
+        assertEquals("X:1|T:t|C:Unknown|M:4/4|L:1/8|Q:100|K:F#|V:1",
+                ABCHeader.read(new StringReader("X:1\nT:t\nK:F#\nC|]\n")).toString());
+    }
+
+    @Test
+    //A minor Key should be named with its accidental before its mode, though its K: field writes the mode first
+    public void minorKeyTest() {
+        assertEquals("F#m", ABCHeader.read(new StringReader("X:1\nT:t\nK:Fm#\nC|]\n")).getKey());
+        assertEquals("Bbm", ABCHeader.read(new StringReader("X:1\nT:t\nK:Bmb\nC|]\n")).getKey());
+    }
+
+    @Test(timeout = 10000)
+    //A header that never reaches its Key should be refused rather than read forever
+    public void missingKeyTest() {
+        for (String text : new String[] {"X:1\nT:t\nC D|\n", "X:1\nT:t\nM:4/4\n", "X:1\nT:t\n"}) {
+            try {
+                ABCHeader.read(new StringReader(text));
+                fail("Read a header without a Key: " + text);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    //The music after the Key should never be read, however long or broken it is
+    public void stopsAtKeyTest() {
+        String piece = new ABCGenerator(3).setBars(20000).generate();
+        CountingReader reader = new CountingReader(piece + "this is not music\n");
+        assertEquals(ABCHeader.of(new ABCParser(new ABCLexer(piece)).parse()).toString(), ABCHeader.read(reader).toString());
+        assertTrue(piece.length() > 1 << 18);
+        assertTrue(reader.count < 1 << 16);
+    }
+
+    @Test
+    //A batch should report the header of each file, reading none of their music
+    public void batchTest() throws IOException {
+        File input = folder.newFolder("input");
+        try (Writer out = new FileWriter(new File(input, "tune.abc"))) {
+            out.write("X:3\nT:Batch\nK:D\nnot music at all\n");
+        }
+        ABCBatch.Summary summary = new ABCBatch(input, ABCBatch.Output.HEADER, null, 1).run();
+        assertEquals(0, summary.getFailures());
+        assertEquals("X:3|T:Batch|C:Unknown|M:4/4|L:1/8|Q:100|K:D|V:1", summary.getResults().get(0).getReport());
+    }
+}
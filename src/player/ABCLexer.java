@@ -1,7 +1,8 @@
 package player;
 
+import java.io.Reader;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -11,16 +12,49 @@ import player.ABCTerminalLexer.Terminals;
 import player.Tokens.ElemToken;
 import player.Tokens.NoteToken;
 
+/**
+ * Note: a Lexer keeps its place in the input and its Matchers to itself, so it belongs to the one
+ * thread reading its Tokens, only the precompiled Patterns it is built from are shared
+ */
 public class ABCLexer {
+	/**
+	 * The engines available to find the next token, the SCANNER is the single
+	 * pass ABCScanner, PATTERN matches the ABC Grammar regexes directly and is
+	 * kept as a reference to compare the SCANNER against
+	 */
+	public enum Mode {
+		SCANNER,
+		PATTERN
+	}
+
+	// Mode used by Lexers built without one, set with -Dplayer.lexer.mode=PATTERN
+	private static final Mode DEFAULT_MODE = Mode.valueOf(System.getProperty(
+			"player.lexer.mode", Mode.SCANNER.name()));
+	// Mapping of terminals to the appropriate regexes, shared by all Lexers
+	private static final Map<Tokens.Type, Pattern> REGEX = BuildRegex();
+	// Regexes used by the Builders to inspect a NonTerminal
+	private static final Pattern WHITESPACE = Pattern.compile("\\s");
+	private static final Pattern COMMON_TIME = Pattern.compile(".*C(?!\\|).*");
+	private static final Pattern CUT_TIME = Pattern.compile(".*C\\|.*");
+	private static final Pattern FIRST_REPEAT = Pattern.compile(".*1.*");
+
 	// Storage for the input abc file
-	private String input;
+	private final CharSequence input;
+	// The window over a Reader when streaming, null for whole String inputs
+	private final ABCLineBuffer stream;
 	// Location in the abc file
 	private int position;
-	// Mapping of terminals to the appropriate regexes
-	private Map<Tokens.Type, String> regex = new HashMap<Tokens.Type, String>();
-	// The initial string combo used to compile token values
-	private String lookFor;
+	// The engine used to find the extent of each token
+	private final Mode mode;
+	// The single pass scanner that finds the extent of each token
+	private final ABCScanner scanner;
+	// Matchers over the input for each regex, built when first needed
+	private final Matcher[] matchers = new Matcher[Tokens.Type.values().length];
+	// End of the NonTerminal found by the last check for next token type
+	private int nonTerminalEnd;
 	private Tokens defaultToken = new Tokens();
+	// Shared Notes and Rests, so a repeated note is made only once
+	private final NoteTokenPool tokenPool;
 	private Tokens.Type currentTokenType;
 
 	/**
@@ -31,22 +65,89 @@ public class ABCLexer {
 	 *            , the string upon which to build an ABCLexer
 	 */
 	public ABCLexer(String input) {
+		this(input, DEFAULT_MODE);
+	}
+
+	/**
+	 * Creates a Lexer that identifies major Terminal and NonTerminal sequences
+	 * as described by the ABC Grammar subset understood by the program
+	 * 
+	 * @param input
+	 *            , the string upon which to build an ABCLexer
+	 * @param mode
+	 *            , the engine with which to find tokens
+	 */
+	public ABCLexer(String input, Mode mode) {
+		this(input, null, mode, new NoteTokenPool());
+	}
+
+	/**
+	 * Creates a Lexer that tokenizes a Reader incrementally, holding only the
+	 * line being lexed in memory so inputs of any size lex in constant space
+	 * 
+	 * Note: lines are read as by readLine(), so the tokens are those of the
+	 * lines joined by "\n", and the Reader is closed once exhausted
+	 * 
+	 * @param reader
+	 *            , the Reader upon which to build an ABCLexer
+	 */
+	public ABCLexer(Reader reader) {
+		this(reader, DEFAULT_MODE);
+	}
+
+	/**
+	 * Creates a Lexer that tokenizes a Reader incrementally, holding only the
+	 * line being lexed in memory so inputs of any size lex in constant space
+	 * 
+	 * @param reader
+	 *            , the Reader upon which to build an ABCLexer
+	 * @param mode
+	 *            , the engine with which to find tokens
+	 */
+	public ABCLexer(Reader reader, Mode mode) {
+		this(new ABCLineBuffer(reader), mode);
+	}
+
+	private ABCLexer(ABCLineBuffer stream, Mode mode) {
+		this(stream, stream, mode, new NoteTokenPool());
+	}
+
+	// Lexes the inside of a Chord or Tuplet with the pool of the Lexer it was found by
+	private ABCLexer(String input, Mode mode, NoteTokenPool tokenPool) {
+		this(input, null, mode, tokenPool);
+	}
+
+	private ABCLexer(CharSequence input, ABCLineBuffer stream, Mode mode, NoteTokenPool tokenPool) {
 		this.input = input;
+		this.stream = stream;
 		this.position = 0;
-		BuildRegex();
+		this.mode = mode;
+		this.tokenPool = tokenPool;
+		this.scanner = new ABCScanner(input);
+	}
+
+	/**
+	 * @return The pool the Notes and Rests of this Lexer are drawn from, with its hit and miss counts
+	 */
+	public NoteTokenPool getTokenPool() {
+		return tokenPool;
 	}
 
 	/**
 	 * Creates a Mapping between Terminals/NonTerminals for the ABC Grammar of
-	 * the Lexer and a regular expression that represents that sequence
+	 * the Lexer and a precompiled regular expression that represents that
+	 * sequence with any leading whitespace, built once for all Lexers
 	 * 
 	 * Note:A fair few of these are dense, and many rely on greed initialization
 	 * and negative lookahead to function properly, tread lightly if edited
 	 * 
 	 * (Also, Escape Characters must be escaped to survive Java.String, thus the
 	 * double escapes)
+	 * 
+	 * @return A Mapping of every Tokens.Type to its Pattern
 	 */
-	private void BuildRegex() {
+	private static Map<Tokens.Type, Pattern> BuildRegex() {
+		Map<Tokens.Type, String> regex = new EnumMap<Tokens.Type, String>(Tokens.Type.class);
 		regex.put(Tokens.Type.BARLINE,
 				"((\\|[\\]\\|:])|(\\[\\|)|(:\\|)|(\\|(?!(\\[[12]))))");
 		regex.put(Tokens.Type.CHORD, "\\[[A-Ga-g\\^_=0-9,'/z]+\\]");
@@ -65,44 +166,82 @@ public class ABCLexer {
 		regex.put(Tokens.Type.REPEAT, "\\|?+\\[[12]");
 		regex.put(Tokens.Type.REST, "z[0-9]*/?[0-9]*");
 		regex.put(Tokens.Type.TUPLET, "\\([234][A-Ga-g\\^_=0-9,'/z]++");
+
+		Map<Tokens.Type, Pattern> compiled = new EnumMap<Tokens.Type, Pattern>(Tokens.Type.class);
+		for (Map.Entry<Tokens.Type, String> entry : regex.entrySet()) {
+			compiled.put(entry.getKey(), Pattern.compile("\\s*" + entry.getValue()));
+		}
+		return compiled;
+	}
+
+	/**
+	 * @return The engine this ABCLexer uses to find tokens
+	 */
+	public Mode getMode() {
+		return mode;
 	}
 
 	/**
 	 * Without incrementing the ABCLexer, determine the next token type that
-	 * would be encountered to avoid race conditions with Maps and due to the
-	 * nature of newlines in Java.String, it must search for EoL prior to
-	 * utilizing the Map to search for all other Token types
+	 * would be encountered, whitespace containing a newline is an EoL before
+	 * it is anything else
+	 * 
+	 * Note: the ABCScanner reads each character of the token once, so lexing
+	 * a whole file is linear in its length
 	 * 
 	 * @return A Tokens.Type corresponding to the next Token available from the
 	 *         ABCLexer
 	 */
 	public Tokens.Type GetNextTokenType() {
-		// For all Types of tokens
 		if (IsDone()) {
 			return Tokens.Type.END_OF_LINE;
-
-		}
-		lookFor = "^.{" + position + "}\\s*"
-				+ regex.get(Tokens.Type.END_OF_LINE) + ".*";
-		if (Pattern.compile(lookFor, 32).matcher(input).matches()) {
-			return Tokens.Type.END_OF_LINE;
 		}
-
-		for (Tokens.Type key : Tokens.Type.values()) {
-			// Build a regex pattern that ignores 'position' characters before
-			// And then checks for that type of token
-			lookFor = "^.{" + position + "}\\s*" + regex.get(key) + ".*";
-			// Return a successful match
-			// Compile a matcher where . characters match newLine characters
-			if (Pattern.compile(lookFor, 32).matcher(input).matches()) {
+		Tokens.Type key;
+		if (mode == Mode.SCANNER) {
+			key = scanner.scan(position);
+			if (key != null) {
+				nonTerminalEnd = scanner.getTokenEnd();
 				return key;
 			}
+		} else {
+			// Due to the nature of newlines, search for EoL prior to all other
+			// Token types
+			if (IsItThere(Tokens.Type.END_OF_LINE)) {
+				return Tokens.Type.END_OF_LINE;
+			}
+			for (Tokens.Type type : Tokens.Type.values()) {
+				if (IsItThere(type)) {
+					return type;
+				}
+			}
 		}
 		// If no matches, then throw bad input exception
 		throw new IllegalArgumentException(
 				"Bad input found at starting at position: " + position);
 	}
 
+	/**
+	 * Matches the regex of a given Tokens.Type at the current position, and
+	 * only there, storing the extent of any match for GetNonTerminalString()
+	 * 
+	 * @param type
+	 *            , the Tokens.Type for which to check
+	 * @return A boolean representing if the token starts at the position
+	 */
+	private boolean IsItThere(Tokens.Type type) {
+		Matcher find = matchers[type.ordinal()];
+		if (find == null) {
+			find = REGEX.get(type).matcher(input);
+			matchers[type.ordinal()] = find;
+		}
+		find.region(position, input.length());
+		if (find.lookingAt()) {
+			nonTerminalEnd = find.end();
+			return true;
+		}
+		return false;
+	}
+
 	/**
 	 * Sees if the ABCLexer has been exhausted of inputs
 	 * 
@@ -110,6 +249,9 @@ public class ABCLexer {
 	 *         input
 	 */
 	public boolean IsDone() {
+		if (stream != null) {
+			stream.fill(position);
+		}
 		return (position >= input.length());
 	}
 
@@ -122,13 +264,12 @@ public class ABCLexer {
 	 *         Character with leading whitespace removed
 	 */
 	private String GetNonTerminalString() {
-		Pattern seek = Pattern.compile(
-				lookFor.substring(0, (lookFor.length() - 2)), 32);
-		Matcher find = seek.matcher(input);
-		find.find();
-		String value = find.group().substring(position);
-		position += value.length();
-		return value.replaceAll("^\\s", "");
+		String value = input.subSequence(position, nonTerminalEnd).toString();
+		position = nonTerminalEnd;
+		if (value.length() > 0 && ABCScanner.isWhitespace(value.charAt(0))) {
+			return value.substring(1);
+		}
+		return value;
 	}
 
 	/**
@@ -158,8 +299,8 @@ public class ABCLexer {
 		} else {
 			denominator = 1;
 		}
-		// Return the new rest token
-		return defaultToken.new NoteToken(numerator, denominator);
+		// Return the shared rest token
+		return tokenPool.rest(numerator, denominator);
 	}
 
 	/**
@@ -213,9 +354,8 @@ public class ABCLexer {
 			denominator = 1;
 		}
 
-		// Return the new note token
-		return defaultToken.new NoteToken(note, octave, accidental, numerator,
-				denominator);
+		// Return the shared note token
+		return tokenPool.note(note, octave, accidental, numerator, denominator);
 	}
 
 	/**
@@ -229,13 +369,13 @@ public class ABCLexer {
 	 */
 	private NoteToken BuildCompoundNoteToken() {
 		currentTokenType = GetNextTokenType();
-		String nonTerminal = GetNonTerminalString().replaceAll("\\s", "");
+		String nonTerminal = WHITESPACE.matcher(GetNonTerminalString()).replaceAll("");
 		int numerator, denominator;
 		// Grab the nonTerminal string, then
 		// Check to see what type of compound we are dealing with
 		// The recursively build the appropriate list
 		if (nonTerminal.charAt(0) == '(') {
-			ABCLexer miniLex = new ABCLexer(nonTerminal.substring(2));
+			ABCLexer miniLex = new ABCLexer(nonTerminal.substring(2), mode, tokenPool);
 			NoteToken[] noteList;
 			// Quickly determine timing of tuplet based on internal notes
 			switch (nonTerminal.charAt(1)) {
@@ -299,7 +439,7 @@ public class ABCLexer {
 			}
 		} else {
 			ABCLexer miniLex = new ABCLexer(nonTerminal.substring(1,
-					(nonTerminal.length() - 1)));
+					(nonTerminal.length() - 1)), mode, tokenPool);
 			List<NoteToken> noteList = new ArrayList<NoteToken>();
 			while (!miniLex.IsDone()) {
 				miniLex.GetNextTokenType();
@@ -373,9 +513,9 @@ public class ABCLexer {
 
 		int numerator, denominator;
 
-		if (nonTerminal.matches(".*C(?!\\|).*")) {
+		if (COMMON_TIME.matcher(nonTerminal).matches()) {
 			return defaultToken.new ElemToken(currentTokenType, 4, 4);
-		} else if (nonTerminal.matches(".*C\\|.*")) {
+		} else if (CUT_TIME.matcher(nonTerminal).matches()) {
 			return defaultToken.new ElemToken(currentTokenType, 2, 2);
 		} else {
 			if (terminalCollector.IsItThere(Terminals.DIGIT)) {
@@ -407,7 +547,7 @@ public class ABCLexer {
 	 */
 	private ElemToken BuildBarlineToken() {
 		// Kill spaces on barlines
-		String nonTerminal = GetNonTerminalString().replaceAll("\\s", "");
+		String nonTerminal = WHITESPACE.matcher(GetNonTerminalString()).replaceAll("");
 		if (nonTerminal.length() == 1) {
 			return defaultToken.new ElemToken(currentTokenType, 1, 1);
 		} else {
@@ -440,7 +580,7 @@ public class ABCLexer {
 	 */
 	private ElemToken BuildRepeatToken() {
 		String nonTerminal = GetNonTerminalString();
-		if (nonTerminal.matches(".*1.*")) {
+		if (FIRST_REPEAT.matcher(nonTerminal).matches()) {
 			return defaultToken.new ElemToken(currentTokenType, 1, 1);
 		} else {
 			return defaultToken.new ElemToken(currentTokenType, 2, 1);
@@ -465,18 +605,18 @@ public class ABCLexer {
 			throw new IllegalArgumentException(
 					"Somehow recieved keynote without a basenote");
 		}
-		// now the accidental
-		if (terminalCollector.IsItThere(Terminals.KEY_ACCIDENTAL)) {
-			accidental = terminalCollector.FetchKeyAccidental();
-		} else {
-			accidental = 0;
-		}
-		// finally get the minor or not
+		// now the minor or not, which the ABC Grammar writes before the accidental
 		if (terminalCollector.IsItThere(Terminals.MODE_MINOR)) {
 			octave = terminalCollector.FetchModeMinor();
 		} else {
 			octave = 0;
 		}
+		// finally the accidental
+		if (terminalCollector.IsItThere(Terminals.KEY_ACCIDENTAL)) {
+			accidental = terminalCollector.FetchKeyAccidental();
+		} else {
+			accidental = 0;
+		}
 		return defaultToken.new ElemToken(defaultToken.new NoteToken(note,
 				octave, accidental, 1, 1));
 	}
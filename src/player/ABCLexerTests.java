@@ -2,6 +2,11 @@ package player;
 
 import static org.junit.Assert.*;
 
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+
 import org.junit.Test;
 
 /*Notes on Testing Strategy
@@ -309,4 +314,105 @@ public class ABCLexerTests {
    
 
     
+    
+    @Test
+    //Tests that a run of tokens is split in order, with whitespace skipped and newlines as EoL
+    public void tokenSequenceTest() {
+        String input = "C D|[CE] (3abc z/2|]\n|:A";
+        Tokens.Type[] expected = {Tokens.Type.NOTE, Tokens.Type.NOTE, Tokens.Type.BARLINE, Tokens.Type.CHORD,
+                                  Tokens.Type.TUPLET, Tokens.Type.REST, Tokens.Type.BARLINE, Tokens.Type.END_OF_LINE,
+                                  Tokens.Type.BARLINE, Tokens.Type.NOTE};
+        ABCLexer lexer = new ABCLexer(input);
+        for (Tokens.Type type : expected) {
+            assertEquals(type, lexer.GetNextTokenType());
+            if (type == Tokens.Type.END_OF_LINE) {
+                lexer.getEndOfLineToken();
+            } else if (type == Tokens.Type.BARLINE) {
+                lexer.getNextElemToken();
+            } else {
+                lexer.getNextNoteToken();
+            }
+        }
+        assertTrue(lexer.IsDone());
+    }
+    
+    @Test
+    //Tests that a long piece is lexed completely, every note of every bar should be found
+    public void longInputTest() {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            input.append("A B c2 |");
+        }
+        ABCLexer lexer = new ABCLexer(input.toString());
+        int notes = 0;
+        while (!lexer.IsDone()) {
+            if (lexer.GetNextTokenType() == Tokens.Type.NOTE) {
+                lexer.getNextNoteToken();
+                notes++;
+            } else {
+                lexer.getNextElemToken();
+            }
+        }
+        assertEquals(15000, notes);
+    }
+    
+    //Lexes the whole input, recording each Type and the Token built from it
+    private String lexAll(ABCLexer lexer) {
+        StringBuilder output = new StringBuilder();
+        while (!lexer.IsDone()) {
+            Tokens.Type type = lexer.GetNextTokenType();
+            output.append(type).append(' ');
+            switch (type) {
+            case NOTE: case REST: case CHORD: case TUPLET:
+                output.append(lexer.getNextNoteToken().toString());
+                break;
+            case END_OF_LINE:
+                lexer.getEndOfLineToken();
+                break;
+            default:
+                lexer.getNextElemToken();
+                break;
+            }
+            output.append('\n');
+        }
+        return output.toString();
+    }
+    
+    @Test
+    //Tests that the scanner and the regex patterns lex every sample piece into the same tokens
+    public void lexerModesAgreeTest() throws IOException {
+        String[] files = {"fur_elise", "invention", "little_night_music", "paddy", "piece1", "piece2",
+                          "prelude", "scale", "waltzing"};
+        for (String file : files) {
+            BufferedReader reader = new BufferedReader(new FileReader("./sample_abc/" + file + ".abc"));
+            StringBuilder input = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                input.append(line);
+                input.append("\n");
+            }
+            reader.close();
+            String scanned = lexAll(new ABCLexer(input.toString(), ABCLexer.Mode.SCANNER));
+            String matched = lexAll(new ABCLexer(input.toString(), ABCLexer.Mode.PATTERN));
+            assertEquals(matched, scanned);
+        }
+    }
+    
+    @Test
+    //Tests that lexing a Reader line by line gives the same tokens as lexing the whole String
+    public void readerInputTest() throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader("./sample_abc/prelude.abc"));
+        StringBuilder input = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            input.append(line);
+            input.append("\n");
+        }
+        reader.close();
+        String whole = lexAll(new ABCLexer(input.toString()));
+        String streamed = lexAll(new ABCLexer(new FileReader("./sample_abc/prelude.abc")));
+        assertEquals(whole, streamed);
+        // Line endings are normalized as readLine() would
+        assertEquals(lexAll(new ABCLexer("A B|\nC|]\n")), lexAll(new ABCLexer(new StringReader("A B|\r\nC|]"))));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package player;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+/**
+ * A window over a Reader that the ABCLexer can scan as if it were the whole input, only the
+ * line holding the current position is kept in memory, lines are read on demand and the text
+ * before the position is discarded as new lines arrive
+ *
+ * Lines are normalized exactly as reading the file with readLine() and joining with "\n" would,
+ * no token crosses a newline so a single line is all the lookahead the Lexer ever needs
+ *
+ * Note: indices are absolute positions in the input, indices before the current line are gone
+ */
+class ABCLineBuffer implements CharSequence {
+	// Source of the lines
+	private final BufferedReader reader;
+	// The buffered text, always ending with a newline unless empty
+	private final StringBuilder buffer = new StringBuilder();
+	// Absolute position in the input of the first buffered character
+	private int offset;
+	// Whether the reader has run out of lines
+	private boolean exhausted;
+
+	/**
+	 * Creates a buffer that reads its lines from a Reader
+	 *
+	 * @param reader
+	 *            , the Reader from which to draw the input
+	 */
+	ABCLineBuffer(Reader reader) {
+		if (reader instanceof BufferedReader) {
+			this.reader = (BufferedReader) reader;
+		} else {
+			this.reader = new BufferedReader(reader);
+		}
+	}
+
+	/**
+	 * Makes sure the line holding position is buffered, reading the next line
+	 * and dropping everything before it once position passes the buffered text
+	 *
+	 * @param position
+	 *            , the absolute location the Lexer is about to scan
+	 */
+	void fill(int position) {
+		while (!exhausted && position >= length()) {
+			String line;
+			try {
+				line = reader.readLine();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not read the abc input", e);
+			}
+			if (line == null) {
+				exhausted = true;
+				close();
+			} else {
+				offset += buffer.length();
+				buffer.setLength(0);
+				buffer.append(line);
+				buffer.append('\n');
+			}
+		}
+	}
+
+	// Releases the Reader once all of its lines are read
+	private void close() {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not close the abc input", e);
+		}
+	}
+
+	@Override
+	public int length() {
+		return offset + buffer.length();
+	}
+
+	@Override
+	public char charAt(int index) {
+		return buffer.charAt(index - offset);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return buffer.substring(start - offset, end - offset);
+	}
+
+	@Override
+	public String toString() {
+		return buffer.toString();
+	}
+}
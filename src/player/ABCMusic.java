@@ -1,36 +1,40 @@
 package player;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Sequence;
 
-import player.ABC_ADT.Bars;
-import player.ABC_ADT.Meters;
+import player.ABC_ADT.NoteVisitor;
 import player.ABC_ADT.Voice;
 import player.Tokens.NoteToken;
-import sound.Pitch;
+import sound.MidiFileWriter;
 import sound.SequencePlayer;
+import sound.TrackWriter;
 
 // Where the magic should happen at the end
-public class ABCMusic {
+/**
+ * Note: nothing in the Piece changes once it has been parsed, rendering goes through an ABCRenderer
+ * of its own each time, so one ABCMusic may be rendered, played or exported by many threads at once
+ * 
+ * Note: Serializable so that an ABCCache may save the parsed Piece to disk
+ */
+public class ABCMusic implements Serializable {
+    private static final long serialVersionUID = 1L;
     
-    public List<Voice> VoicesList = new ArrayList<Voice>();
+    public final List<Voice> VoicesList;
     
     private final String name, title, IDNum;
     private final int bpm;
-    private int[] meterSum = new int[2];
-    private int[] noteLength = new int[2];
+    private final int[] meterSum;
+    private final int[] noteLength;
     private final NoteToken key;
     
-    private Map<Character, Integer> keySignature = new HashMap<Character, Integer>();
-    private Map<String,Integer> keyAccidental = new HashMap<String,Integer>();
-    private SequencePlayer player;
-    
     /**
      * The final ADT that represents the union of the ABCHeader and ABCMusic halves of
      * a .abc file as described by the ABC Grammar understood by the ABCParser as a Piece of Music
@@ -101,553 +105,170 @@ public class ABCMusic {
         System.out.println("Piece Key:" + getKey().getNote() + accidental + minor);
     }
     
+    
+
+    /**
+     * The Sharps and Flats of every Key that can be played, indexed by the basenote of the Key from A,
+     * then by its accidental plus one, each holding the Sharps (1) and Flats (-1) of the notes A to G,
+     * null for Keys with more than seven of them
+     */
+    private static final byte[][][] MAJOR_KEYS = {
+        {{-1,-1, 0,-1,-1, 0, 0}, { 0, 0, 1, 0, 0, 1, 1}, null},                   // Ab, A, A#
+        {{ 0,-1, 0, 0,-1, 0, 0}, { 1, 0, 1, 1, 0, 1, 1}, null},                   // Bb, B, B#
+        {{-1,-1,-1,-1,-1,-1,-1}, { 0, 0, 0, 0, 0, 0, 0}, { 1, 1, 1, 1, 1, 1, 1}}, // Cb, C, C#
+        {{-1,-1, 0,-1,-1, 0,-1}, { 0, 0, 1, 0, 0, 1, 0}, null},                   // Db, D, D#
+        {{-1,-1, 0, 0,-1, 0, 0}, { 0, 0, 1, 1, 0, 1, 1}, null},                   // Eb, E, E#
+        {null, { 0,-1, 0, 0, 0, 0, 0}, { 1, 0, 1, 1, 1, 1, 1}},                   // Fb, F, F#
+        {{-1,-1,-1,-1,-1, 0,-1}, { 0, 0, 0, 0, 0, 1, 0}, null},                   // Gb, G, G#
+    };
+    private static final byte[][][] MINOR_KEYS = {
+        {{-1,-1,-1,-1,-1,-1,-1}, { 0, 0, 0, 0, 0, 0, 0}, { 1, 1, 1, 1, 1, 1, 1}}, // Abm, Am, A#m
+        {{-1,-1, 0,-1,-1, 0,-1}, { 0, 0, 1, 0, 0, 1, 0}, null},                   // Bbm, Bm, B#m
+        {null, {-1,-1, 0, 0,-1, 0, 0}, { 0, 0, 1, 1, 0, 1, 1}},                   // Cbm, Cm, C#m
+        {null, { 0,-1, 0, 0, 0, 0, 0}, { 1, 0, 1, 1, 1, 1, 1}},                   // Dbm, Dm, D#m
+        {{-1,-1,-1,-1,-1, 0,-1}, { 0, 0, 0, 0, 0, 1, 0}, null},                   // Ebm, Em, E#m
+        {null, {-1,-1, 0,-1,-1, 0, 0}, { 0, 0, 1, 0, 0, 1, 1}},                   // Fbm, Fm, F#m
+        {null, { 0,-1, 0, 0,-1, 0, 0}, { 1, 0, 1, 1, 0, 1, 1}},                   // Gbm, Gm, G#m
+    };
+
     /**
-     * Turns a NoteToken into a Pitch by equating their representations and then enforcing the
-     * Key of the Piece and the Accidentals encountered in the given meter
+     * Uses the internal Key of the Piece to look up the correct Key Signature for the Piece
+     * to be played in and then return that Key Signature
      * 
-     * @param workingNote, the NoteToken from which to make a Pitch
-     * @return A Pitch that represents the given input NoteToken
+     * @return The Sharps (1) and Flats (-1) of the Key, indexed by note letter from A to G
+     * @throws IllegalArgumentException if the Key has no Key Signature of at most seven Sharps or Flats
      */
-    private Pitch constructNote(NoteToken workingNote){
-        Pitch workingPitch;
-        int octave = 0;               
-        // Add the note initally
-        if('A' <= workingNote.getNote() && workingNote.getNote() <= 'G'){
-            workingPitch = new Pitch(workingNote.getNote());
-        } else {
-        	octave++;
-        	workingPitch = new Pitch(Character.toUpperCase(workingNote.getNote())).transpose(Pitch.OCTAVE);
-        }
-        // Transpose by the octaves
-        octave+=workingNote.getOctave();
-        workingPitch = workingPitch.octaveTranspose(workingNote.getOctave());
-        // Collect accidentals, use them to modify the accidental list
-        switch(workingNote.getNote()){
-        case 'A': case 'a':
-            if(workingNote.getAccidental() == Integer.MIN_VALUE){
-            	keyAccidental.put("A"+octave, 0);
-            } else if(workingNote.getAccidental() == 0){
-                keyAccidental.put("A"+octave, -1*keySignature.get('A'));
-            } else {
-                keyAccidental.put("A"+octave, -1*keySignature.get('A')+workingNote.getAccidental());
-            }
-            break;
-        case 'B': case 'b':
-            if(workingNote.getAccidental() == Integer.MIN_VALUE){
-            	keyAccidental.put("B"+octave, 0);
-            } else if(workingNote.getAccidental() == 0){
-                keyAccidental.put("B"+octave, -1*keySignature.get('B'));
-            } else {
-                keyAccidental.put("B"+octave, -1*keySignature.get('B')+workingNote.getAccidental());
-            } 
-            break;
-        case 'C': case 'c':
-            if(workingNote.getAccidental() == Integer.MIN_VALUE){
-            	keyAccidental.put("C"+octave, 0);
-            } else if(workingNote.getAccidental() == 0){
-                keyAccidental.put("C"+octave, -1*keySignature.get('C'));
-            } else {
-                keyAccidental.put("C"+octave, -1*keySignature.get('C')+workingNote.getAccidental());
-            } 
-            break;
-        case 'D': case 'd':
-            if(workingNote.getAccidental() == Integer.MIN_VALUE){
-            	keyAccidental.put("D"+octave, 0);
-            } else if(workingNote.getAccidental() == 0){
-                keyAccidental.put("D"+octave, -1*keySignature.get('D'));
-            } else {
-                keyAccidental.put("D"+octave, -1*keySignature.get('D')+workingNote.getAccidental());
-            } 
-            break;
-        case 'E': case 'e':
-            if(workingNote.getAccidental() == Integer.MIN_VALUE){
-            	keyAccidental.put("E"+octave, 0);
-            } else if(workingNote.getAccidental() == 0){
-                keyAccidental.put("E"+octave, -1*keySignature.get('E'));
-            } else {
-                keyAccidental.put("E"+octave, -1*keySignature.get('E')+workingNote.getAccidental());
-            } 
-            break;
-        case 'F': case 'f':
-            if(workingNote.getAccidental() == Integer.MIN_VALUE){
-                keyAccidental.put("F"+octave, 0);
-            } else if(workingNote.getAccidental() == 0){
-                keyAccidental.put("F"+octave, -1*keySignature.get('F'));
-            } else {
-                keyAccidental.put("F"+octave, -1*keySignature.get('F')+workingNote.getAccidental());
-            } 
-            break;
-        case 'G': case 'g':
-            if(workingNote.getAccidental() == Integer.MIN_VALUE){
-            	keyAccidental.put("G"+octave, 0);
-            } else if(workingNote.getAccidental() == 0){
-                keyAccidental.put("G"+octave, -1*keySignature.get('G'));
-            } else {
-                keyAccidental.put("G"+octave, -1*keySignature.get('G')+workingNote.getAccidental());
-            } 
-            break;
+    byte[] getKeySignature(){
+        NoteToken key = getKey();
+        boolean major = key.getOctave() == 0;
+        int letter = key.getNote() - 'A';
+        int accidental = key.getAccidental();
+        byte[][][] keys = major ? MAJOR_KEYS : MINOR_KEYS;
+        if(letter < 0 || letter >= keys.length){
+            throw new IllegalArgumentException("Cannot have Key Signature " + key.getNote());
         }
-        // Now modify by the accidental and key signature in tandem
-        switch(workingNote.getNote()){        
-        case 'A': case 'a':
-            workingPitch = workingPitch.accidentalTranspose(keyAccidental.get("A"+octave));
-            workingPitch = workingPitch.accidentalTranspose(keySignature.get('A'));
-            break;
-        case 'B': case 'b':
-            workingPitch = workingPitch.accidentalTranspose(keyAccidental.get("B"+octave));
-            workingPitch = workingPitch.accidentalTranspose(keySignature.get('B'));
-            break;
-        case 'C': case 'c':
-            workingPitch = workingPitch.accidentalTranspose(keyAccidental.get("C"+octave));
-            workingPitch = workingPitch.accidentalTranspose(keySignature.get('C'));
-            break;
-        case 'D': case 'd':
-            workingPitch = workingPitch.accidentalTranspose(keyAccidental.get("D"+octave));
-            workingPitch = workingPitch.accidentalTranspose(keySignature.get('D'));
-            break;
-        case 'E': case 'e':
-            workingPitch = workingPitch.accidentalTranspose(keyAccidental.get("E"+octave));
-            workingPitch = workingPitch.accidentalTranspose(keySignature.get('E'));
-            break;
-        case 'F': case 'f':
-            workingPitch = workingPitch.accidentalTranspose(keyAccidental.get("F"+octave));
-            workingPitch = workingPitch.accidentalTranspose(keySignature.get('F'));
-            break;
-        case 'G': case 'g':
-            workingPitch = workingPitch.accidentalTranspose(keyAccidental.get("G"+octave));
-            workingPitch = workingPitch.accidentalTranspose(keySignature.get('G'));
-            break;
+        if(accidental < -1 || accidental > 1 || keys[letter][accidental + 1] == null){
+            throw new IllegalArgumentException("Cannot have Key Signature " + key.getNote()
+                    + (accidental > 0 ? " Sharp" : " Flat") + (major ? " Major" : " Minor"));
         }
-        return workingPitch;
+        return keys[letter][accidental + 1].clone();
     }
     
-
     /**
-     * Uses the internal Key of the Piece to determine the correct Key Signature Mapping for the Piece
-     * to be played in and then return that Key Signature
+     * Right now it converts bpm to be based on the number of 1/4 given how many L*Q notes exist
      * 
-     * @return A Mapping of notes in a standard music scale to integers representing Sharps and Flats
-     * to apply to them to apply a specific Key
+     * @return The tempo of the Piece in quarter notes per minute
      */
-    private Map<Character, Integer> getKeySignature(){
-        Map<Character, Integer> keyMap = new HashMap<Character, Integer>();
-        // If in the Major Scales
-        if(getKey().getOctave() == 0){
-            switch(getKey().getNote()){
-            case 'A':
-                // A flat major
-                if(getKey().getAccidental() == -1){
-                    keyMap.put('F', 0);
-                    keyMap.put('C', 0);
-                    keyMap.put('G', 0);
-                    keyMap.put('D', -1);
-                    keyMap.put('A', -1);
-                    keyMap.put('E', -1);
-                    keyMap.put('B', -1);
-                // A major
-                } else if(getKey().getAccidental() == 0) {
-                    keyMap.put('F', 1);
-                    keyMap.put('C', 1);
-                    keyMap.put('G', 1);
-                    keyMap.put('D', 0);
-                    keyMap.put('A', 0);
-                    keyMap.put('E', 0);
-                    keyMap.put('B', 0);
-                } else {
-                    throw new IllegalArgumentException("Cannot have Key Signature A Sharp Major");
-                }
-                break;
-            case 'B':
-                // B flat major
-                if(getKey().getAccidental() == -1){
-                    keyMap.put('F', 0);
-                    keyMap.put('C', 0);
-                    keyMap.put('G', 0);
-                    keyMap.put('D', 0);
-                    keyMap.put('A', 0);
-                    keyMap.put('E', -1);
-                    keyMap.put('B', -1);
-                // B major
-                } else if(getKey().getAccidental() == 0) {
-                    keyMap.put('F', 1);
-                    keyMap.put('C', 1);
-                    keyMap.put('G', 1);
-                    keyMap.put('D', 1);
-                    keyMap.put('A', 1);
-                    keyMap.put('E', 0);
-                    keyMap.put('B', 0);
-                } else {
-                    throw new IllegalArgumentException("Cannot have Key Signature B Sharp Major");
-                }
-                break;
-            case 'C':
-                // C flat Major
-                if(getKey().getAccidental() == -1){
-                    keyMap.put('F', -1);
-                    keyMap.put('C', -1);
-                    keyMap.put('G', -1);
-                    keyMap.put('D', -1);
-                    keyMap.put('A', -1);
-                    keyMap.put('E', -1);
-                    keyMap.put('B', -1);
-                // C sharp Major
-                } else if (getKey().getAccidental() == 1){
-                    keyMap.put('F', 1);
-                    keyMap.put('C', 1);
-                    keyMap.put('G', 1);
-                    keyMap.put('D', 1);
-                    keyMap.put('A', 1);
-                    keyMap.put('E', 1);
-                    keyMap.put('B', 1);
-                // C major
-                } else {
-                    keyMap.put('F', 0);
-                    keyMap.put('C', 0);
-                    keyMap.put('G', 0);
-                    keyMap.put('D', 0);
-                    keyMap.put('A', 0);
-                    keyMap.put('E', 0);
-                    keyMap.put('B', 0);
-                }
-                break;
-            case 'D':
-                // D flat major
-                if(getKey().getAccidental() == -1){
-                    keyMap.put('F', 0);
-                    keyMap.put('C', 0);
-                    keyMap.put('G', -1);
-                    keyMap.put('D', -1);
-                    keyMap.put('A', -1);
-                    keyMap.put('E', -1);
-                    keyMap.put('B', -1);
-                // D major
-                } else if(getKey().getAccidental() == 0) {
-                    keyMap.put('F', 1);
-                    keyMap.put('C', 1);
-                    keyMap.put('G', 0);
-                    keyMap.put('D', 0);
-                    keyMap.put('A', 0);
-                    keyMap.put('E', 0);
-                    keyMap.put('B', 0);
-                } else {
-                    throw new IllegalArgumentException("Cannot have Key Signature D Sharp Major");
-                }
-                break;
-            case 'E':
-                // E flat major
-                if(getKey().getAccidental() == -1){
-                    keyMap.put('F', 0);
-                    keyMap.put('C', 0);
-                    keyMap.put('G', 0);
-                    keyMap.put('D', 0);
-                    keyMap.put('A', -1);
-                    keyMap.put('E', -1);
-                    keyMap.put('B', -1);
-                // E major
-                } else if(getKey().getAccidental() == 0) {
-                    keyMap.put('F', 1);
-                    keyMap.put('C', 1);
-                    keyMap.put('G', 1);
-                    keyMap.put('D', 1);
-                    keyMap.put('A', 0);
-                    keyMap.put('E', 0);
-                    keyMap.put('B', 0);
-                } else {
-                    throw new IllegalArgumentException("Cannot have Key Signature E Sharp Major");
-                }
-                break;
-            case 'F':
-                // F major
-                if(getKey().getAccidental() == 0){
-                    keyMap.put('F', 0);
-                    keyMap.put('C', 0);
-                    keyMap.put('G', 0);
-                    keyMap.put('D', 0);
-                    keyMap.put('A', 0);
-                    keyMap.put('E', 0);
-                    keyMap.put('B', -1);
-                // F sharp major
-                } else if(getKey().getAccidental() == 1) {
-                    keyMap.put('F', 1);
-                    keyMap.put('C', 1);
-                    keyMap.put('G', 1);
-                    keyMap.put('D', 1);
-                    keyMap.put('A', 1);
-                    keyMap.put('E', 1);
-                    keyMap.put('B', 0);
-                } else {
-                    throw new IllegalArgumentException("Cannot have Key Signature F Flat Major");
-                }
-                break;
-            case 'G':
-                // G flat major
-                if(getKey().getAccidental() == -1){
-                    keyMap.put('F', 0);
-                    keyMap.put('C', -1);
-                    keyMap.put('G', -1);
-                    keyMap.put('D', -1);
-                    keyMap.put('A', -1);
-                    keyMap.put('E', -1);
-                    keyMap.put('B', -1);
-                // G major
-                } else if(getKey().getAccidental() == 0) {
-                    keyMap.put('F', 1);
-                    keyMap.put('C', 0);
-                    keyMap.put('G', 0);
-                    keyMap.put('D', 0);
-                    keyMap.put('A', 0);
-                    keyMap.put('E', 0);
-                    keyMap.put('B', 0);
-                } else {
-                    throw new IllegalArgumentException("Cannot have Key Signature G Sharp Major");
-                }
-                break;
-            }     
-        // else it must be a minor scale
-        } else {
-            switch(getKey().getNote()){
-            case 'A':
-                // A flat minor
-                if(getKey().getAccidental() == -1){
-                    keyMap.put('F', -1);
-                    keyMap.put('C', -1);
-                    keyMap.put('G', -1);
-                    keyMap.put('D', -1);
-                    keyMap.put('A', -1);
-                    keyMap.put('E', -1);
-                    keyMap.put('B', -1);
-                // A sharp minor
-                } else if (getKey().getAccidental() == 1){
-                    keyMap.put('F', 1);
-                    keyMap.put('C', 1);
-                    keyMap.put('G', 1);
-                    keyMap.put('D', 1);
-                    keyMap.put('A', 1);
-                    keyMap.put('E', 1);
-                    keyMap.put('B', 1);
-                // A minor
-                } else {
-                    keyMap.put('F', 0);
-                    keyMap.put('C', 0);
-                    keyMap.put('G', 0);
-                    keyMap.put('D', 0);
-                    keyMap.put('A', 0);
-                    keyMap.put('E', 0);
-                    keyMap.put('B', 0);
-                }
-                break;
-            case 'B':
-                // B flat minor
-                if(getKey().getAccidental() == -1){
-                    keyMap.put('F', 0);
-                    keyMap.put('C', 0);
-                    keyMap.put('G', -1);
-                    keyMap.put('D', -1);
-                    keyMap.put('A', -1);
-                    keyMap.put('E', -1);
-                    keyMap.put('B', -1);
-                // B minor
-                } else if(getKey().getAccidental() == 0) {
-                    keyMap.put('F', 1);
-                    keyMap.put('C', 1);
-                    keyMap.put('G', 0);
-                    keyMap.put('D', 0);
-                    keyMap.put('A', 0);
-                    keyMap.put('E', 0);
-                    keyMap.put('B', 0);
-                } else {
-                    throw new IllegalArgumentException("Cannot have Key Signature B Sharp Minor");
-                }
-                break;
-            case 'C':
-                // C minor
-                if(getKey().getAccidental() == 0){
-                    keyMap.put('F', 0);
-                    keyMap.put('C', 0);
-                    keyMap.put('G', 0);
-                    keyMap.put('D', 0);
-                    keyMap.put('A', -1);
-                    keyMap.put('E', -1);
-                    keyMap.put('B', -1);
-                // C sharp minor
-                } else if(getKey().getAccidental() == 1) {
-                    keyMap.put('F', 1);
-                    keyMap.put('C', 1);
-                    keyMap.put('G', 1);
-                    keyMap.put('D', 1);
-                    keyMap.put('A', 0);
-                    keyMap.put('E', 0);
-                    keyMap.put('B', 0);
-                } else {
-                    throw new IllegalArgumentException("Cannot have Key Signature C Flat Minor");
-                }
-                break;
-            case 'D':
-                // D minor
-                if(getKey().getAccidental() == 0){
-                    keyMap.put('F', 0);
-                    keyMap.put('C', 0);
-                    keyMap.put('G', 0);
-                    keyMap.put('D', 0);
-                    keyMap.put('A', 0);
-                    keyMap.put('E', 0);
-                    keyMap.put('B', -1);
-                // D sharp minor
-                } else if(getKey().getAccidental() == 1) {
-                    keyMap.put('F', 1);
-                    keyMap.put('C', 1);
-                    keyMap.put('G', 1);
-                    keyMap.put('D', 1);
-                    keyMap.put('A', 1);
-                    keyMap.put('E', 1);
-                    keyMap.put('B', 0);
-                } else {
-                    throw new IllegalArgumentException("Cannot have Key Signature D Flat Minor");
-                }
-                break;
-            case 'E':
-                // E flat minor
-                if(getKey().getAccidental() == -1){
-                    keyMap.put('F', 0);
-                    keyMap.put('C', -1);
-                    keyMap.put('G', -1);
-                    keyMap.put('D', -1);
-                    keyMap.put('A', -1);
-                    keyMap.put('E', -1);
-                    keyMap.put('B', -1);
-                // E minor
-                } else if(getKey().getAccidental() == 0) {
-                    keyMap.put('F', 1);
-                    keyMap.put('C', 0);
-                    keyMap.put('G', 0);
-                    keyMap.put('D', 0);
-                    keyMap.put('A', 0);
-                    keyMap.put('E', 0);
-                    keyMap.put('B', 0);
-                } else {
-                    throw new IllegalArgumentException("Cannot have Key Signature E Sharp Minor");
-                }
-                break;
-            case 'F':
-                // F minor
-                if(getKey().getAccidental() == 0){
-                    keyMap.put('F', 0);
-                    keyMap.put('C', 0);
-                    keyMap.put('G', 0);
-                    keyMap.put('D', -1);
-                    keyMap.put('A', -1);
-                    keyMap.put('E', -1);
-                    keyMap.put('B', -1);
-                // F sharp minor
-                } else if(getKey().getAccidental() == 1) {
-                    keyMap.put('F', 1);
-                    keyMap.put('C', 1);
-                    keyMap.put('G', 1);
-                    keyMap.put('D', 0);
-                    keyMap.put('A', 0);
-                    keyMap.put('E', 0);
-                    keyMap.put('B', 0);
-                } else {
-                    throw new IllegalArgumentException("Cannot have Key Signature F Flat Minor");
-                }
-                break;
-            case 'G':
-                // G minor
-                if(getKey().getAccidental() == 0){
-                    keyMap.put('F', 0);
-                    keyMap.put('C', 0);
-                    keyMap.put('G', 0);
-                    keyMap.put('D', 0);
-                    keyMap.put('A', 0);
-                    keyMap.put('E', -1);
-                    keyMap.put('B', -1);
-                // G sharp minor    
-                } else if(getKey().getAccidental() == 1){
-                    keyMap.put('F', 1);
-                    keyMap.put('C', 1);
-                    keyMap.put('G', 1);
-                    keyMap.put('D', 1);
-                    keyMap.put('A', 1);
-                    keyMap.put('E', 0);
-                    keyMap.put('B', 0);
+    public int getQuartersPerMinute(){
+        return (getTempo()*getNoteLength()[0]*4)/(getNoteLength()[1]);
+    }
+    
+    /**
+     * Quantizes time such that a default length note lasts 16 ticks, raised until every note of the
+     * Voices, tuplets included, lasts a whole number of ticks
+     * 
+     * Note: walks every note of the Voices, so call it once the Piece is parsed and keep the result
+     * 
+     * @return The number of ticks in a quarter note of the Piece
+     */
+    public int getTicksPerQuarter(){
+        final TickScale scale = new TickScale(getNoteLength());
+        NoteVisitor scaler = new NoteVisitor() {
+            @Override
+            public void visitNote(NoteToken note){
+                if(note.getType() == Tokens.Type.CHORD){
+                    for(NoteToken element : note.getElts()){
+                        scale.add(element.getLength()[0], element.getLength()[1]);
+                    }
                 } else {
-                    throw new IllegalArgumentException("Cannot have Key Signature G Flat Minor");
+                    scale.add(note.getLength()[0], note.getLength()[1]);
                 }
-                break;
-            } 
+            }
+        };
+        for(int i = 0; i < VoicesList.size(); i++){
+            VoicesList.get(i).forEachNote(scaler);
+        }
+        return scale.getTicksPerQuarter();
+    }
+    
+    /**
+     * Quantizes time such that a default length note lasts 16 ticks, for when the notes are not
+     * yet known, a note that does not fit a whole number of ticks is rounded down
+     * 
+     * @return The number of ticks in a quarter note of the Piece, from its header alone
+     */
+    public int getDefaultTicksPerQuarter(){
+        return TickScale.getDefaultTicksPerQuarter(getNoteLength());
+    }
+    
+    
+    /**
+     * Transforms the Voices of the Piece into a MIDI Sequence with one Track per Voice, the first
+     * Track also holding the tempo, without opening a Sequencer or any other MIDI device
+     * 
+     * Note: Voice v is written on channel SequencePlayer.getChannel(v), the channel it is played on
+     * 
+     * @return A Sequence of the whole Piece, ready to be saved as a Standard MIDI File
+     */
+    public Sequence toSequence(){
+        int ticksPerQuarter = getTicksPerQuarter();
+        Sequence sequence;
+        try{
+            sequence = new Sequence(Sequence.PPQ, ticksPerQuarter);
+        } catch (InvalidMidiDataException e) {
+            // PPQ is always a valid division type
+            throw new RuntimeException(e);
+        }
+        ABCRenderer renderer = new ABCRenderer(this, ticksPerQuarter);
+        for(int voice = 0; voice < VoicesList.size(); voice++){
+            TrackWriter writer = new TrackWriter(sequence.createTrack(), SequencePlayer.getChannel(voice));
+            if(voice == 0){
+                writer.setTempo(getQuartersPerMinute(), 0);
+            }
+            renderer.renderVoice(VoicesList.get(voice), writer);
         }
-        return keyMap;
+        return sequence;
     }
-   
-    // A method for setting up an empty accidental at the end of each meter
-    private void resetKeyAccidental(){
-    	keyAccidental.clear();
+    
+    /**
+     * Writes the Piece as a Standard MIDI File, of type 0 for a single Voice and of type 1
+     * with one Track per Voice otherwise, holding the same events as toSequence()
+     * 
+     * Note: the notes are written straight into the bytes of the file, no Sequence is built
+     * 
+     * @param out, the stream to which the file is written, left open
+     * @throws IOException if the stream cannot be written
+     */
+    public void writeMidi(OutputStream out) throws IOException{
+        int ticksPerQuarter = getTicksPerQuarter();
+        MidiFileWriter writer = new MidiFileWriter(ticksPerQuarter);
+        writer.setTempo(getQuartersPerMinute());
+        ABCRenderer renderer = new ABCRenderer(this, ticksPerQuarter);
+        for(Iterator<Voice> i = VoicesList.iterator(); i.hasNext();){
+            renderer.renderVoice(i.next(), writer.createTrack());
+        }
+        writer.write(out);
     }
     
     /**
      * Transforms the Voices of the Piece into Pitches which are then subscribed according to timing to
-     * an internal SequencePlayer, then plays that SequencePlayer to play the Piece out loud
+     * a new SequencePlayer, then plays that SequencePlayer to play the Piece out loud
      * 
      * Catches SequencePlayer Errors internally to avoid them being part of the ABCMusic's responsibility
      * 
      * Note: because tempo must be converted to quarter notes, tempos that are not divisible by 4 will have rounding
      * errors that propagate into the music itself, its fairly negligible, but it exists.
      * 
-     * Note: Assumes that 1/16 of the default note length is the shortest note that would be desired to play, any note shorter will play
-     * for 1/16 of a default note duration
+     * Note: the ticks per quarter are chosen so that every note, tuplets included, lasts a whole number of ticks
+     * 
+     * Note: the Voices are rendered in parallel and each is played on a MIDI channel of its own
      */
     public void PlayMusic(){
     	try{
-            // Right now it converts bpm to be based on the number of 1/4 given how many L*Q notes exist
-            // with the quantized time being
-            int quartersPerMin = (getTempo()*getNoteLength()[0]*4)/(getNoteLength()[1]);
-            int ticksPerQuarter = (getNoteLength()[1]*16)/(getNoteLength()[0]*4);
-            player = new SequencePlayer( quartersPerMin , ticksPerQuarter);
-            // Figure out what the Key means, and keep it as a map to edit notes as they are added
-            keySignature = getKeySignature();
-            // Initialize the accidentals as none, then use that as what gets edited through a meter
-            resetKeyAccidental();
-            
-            for(Iterator<Voice> i = VoicesList.iterator(); i.hasNext();){
-                int startTick = 0;
-                for(Iterator<Bars> j = i.next().BarsList.iterator(); j.hasNext();){
-                    for(Iterator<Meters> k = j.next().MetersList.iterator(); k.hasNext();){
-                        for(Iterator<NoteToken> l = k.next().getElts().iterator(); l.hasNext();){
-                            NoteToken workingNote = l.next();
-                            if(workingNote.getType() == Tokens.Type.CHORD){
-                                int noteTicks = 0;
-                                for(int m = 0; m < workingNote.getElts().length; m++){
-                                    Pitch newNote = constructNote(workingNote.getElts()[m]);
-                                    // Length of a note in terms of quarters
-                                    double noteLength = ((double) workingNote.getElts()[m].getLength()[0]/(double) workingNote.getElts()[m].getLength()[1])*((double) (getNoteLength()[0]*4)/((double) getNoteLength()[1]));
-                                    // Convert the quarters to valid ticks
-                                    noteTicks = (int) (noteLength * ticksPerQuarter);
-                                    player.addNote(newNote.toMidiNote(), startTick, noteTicks);
-                                }   
-                                startTick += noteTicks;
-                            } else if(workingNote.getType() == Tokens.Type.REST) {
-                                // Don't need to make rests
-                                // Length of a note in terms of quarters
-                                double noteLength = ((double) workingNote.getLength()[0]/(double) workingNote.getLength()[1])*((double) (getNoteLength()[0]*4)/((double) getNoteLength()[1]));
-                                // Convert the quarters to valid ticks
-                                // Add ticks for the rests skipping time
-                                int noteTicks = (int) (noteLength * ticksPerQuarter);
-                                startTick += noteTicks;
-                            } else {
-                                Pitch newNote = constructNote(workingNote);
-                                // Length of a note in terms of quarters
-                                double noteLength = ((double) workingNote.getLength()[0]/(double) workingNote.getLength()[1])*((double) (getNoteLength()[0]*4)/((double) getNoteLength()[1]));
-                                // Convert the quarters to valid ticks
-                                int noteTicks = (int) (noteLength * ticksPerQuarter);
-                                player.addNote(newNote.toMidiNote(), startTick, noteTicks);
-                                startTick += noteTicks;
-                            }
-                        }
-                        // Reset Accidentals at the end of the Meter
-                        resetKeyAccidental();
-                    }
-                }
-            }
+            int ticksPerQuarter = getTicksPerQuarter();
+            SequencePlayer player = new SequencePlayer(getQuartersPerMinute(), ticksPerQuarter);
+            // Each Voice is rendered at once on its own channel, then merged into the one track
+            player.addVoices(new ABCRenderer(this, ticksPerQuarter).renderTimelines());
             // Play the finished SequencePlayer with all Voice there-in
             player.play();
             // Catch undesirable errors
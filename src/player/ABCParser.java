@@ -10,6 +10,10 @@ import player.ABC_ADT.Voice;
 import player.Tokens.ElemToken;
 import player.Tokens.NoteToken;
 
+/**
+ * Note: a Parser and its Lexer belong to the one thread running parse(), the ABCMusic it returns
+ * is never changed afterwards and may be shared
+ */
 public class ABCParser {
     private final ABCLexer lexer;
     private Tokens.Type next;
@@ -17,6 +21,27 @@ public class ABCParser {
     private Voice workingVoice;
     private int workingIndex;
     private List<Bars> repeatTracker = new ArrayList<Bars>();
+    private Listener listener;
+    // Where committed Bars go instead of the Voices when parsing to a NoteStore
+    private NoteStore.Builder store;
+    
+    /**
+     * Receives the parts of a piece as soon as the ABCParser has finished them, so they can
+     * be used before the whole file is parsed
+     * 
+     * Note: called on the thread running parse(), the Bars handed over are never mutated again
+     */
+    public interface Listener {
+        /**
+         * @param piece, the ABCMusic built from the header, its Voices are still empty
+         */
+        public void headerParsed(ABCMusic piece);
+        /**
+         * @param voiceIndex, the index in the VoicesList of the Voice the Bar was added to
+         * @param bar, the Bar just added to the end of that Voice
+         */
+        public void barParsed(int voiceIndex, Bars bar);
+    }
     
     /**
      * A Parser for .abc Files
@@ -28,6 +53,13 @@ public class ABCParser {
         this.lexer = Lexer;
     }
     
+    /**
+     * @param listener, a Listener to be told of each part of the piece as it is parsed
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+    
     /**
      * Parses the given .abc File into an ADT, throws RuntimeExceptions upon encountering 
      * ABC Grammar breaking constructs
@@ -62,6 +94,37 @@ public class ABCParser {
         return ThePiece;
     }
     
+    /**
+     * Parses only the header of the given .abc File, up to and including its Key, then stops without
+     * lexing any of the music, so the header of a long file is read as quickly as that of a short one
+     * 
+     * @return An ABCMusic of the header alone, its Voices those named in the header and holding no Bars
+     */
+    public ABCMusic parseHeaderOnly(){
+        next = lexer.GetNextTokenType();
+        if(next != Tokens.Type.FIELD_NUMBER){
+            throw new IllegalArgumentException("Expected a music ID, received: " + next);
+        }
+        parseHeader();
+        return ThePiece;
+    }
+    
+    /**
+     * Parses the given .abc File as parse() does, but puts its music into a compact NoteStore as it
+     * goes rather than keeping the Bars in the Voices of the ABCMusic, so the parse takes only the
+     * memory of the store and of the section of Bars being read
+     * 
+     * @return A NoteStore of the Voices of the file, its header in getPiece()
+     */
+    public NoteStore parseToStore(){
+        store = new NoteStore.Builder();
+        try{
+            return store.build(parse());
+        } finally {
+            store = null;
+        }
+    }
+    
     /**
      * Verifies an EoL Character terminates any given line for which it is run, as well as
      * Checking for Comment blocks and discarding them (since they are part of an EoL)
@@ -186,8 +249,12 @@ public class ABCParser {
                 checkAndTrashEoL();
                 break;
                 
+            case FIELD_KEY:
+                break;
+                
             default:
-            	break;
+                // Anything else, the end of the input included, would never reach the Key
+                throw new IllegalArgumentException("Expected a header field or the music Key, received: " + next);
             }
         }
         // Last element should be the field key
@@ -204,6 +271,9 @@ public class ABCParser {
         }
         // Initialize the new ABCMusic file
         ThePiece = new ABCMusic(VoicesList, name, key, noteLength, meterSum, bpm, title, IDNum);
+        if(listener != null){
+            listener.headerParsed(ThePiece);
+        }
     }
     
     /**
@@ -245,9 +315,33 @@ public class ABCParser {
         for(int index = 0; index < ThePiece.VoicesList.size(); index++){
             workingVoice = ThePiece.VoicesList.get(index);
             workingIndex = index;
-            workingVoice.addCopyElts(repeatTracker.get(workingIndex));
+            commitBar(repeatTracker.get(workingIndex));
         }  
     }
+    
+    /**
+     * Adds a Bar sharing the Meters of the given Bar to the working Voice and hands it to the Listener,
+     * or when parsing to a NoteStore adds the Bar to the store alone
+     * 
+     * Note: a Meter is never mutated once parsed, so every repeat of it is the same Meters object
+     * 
+     * @param bar, the Bar whose Meters are to be added
+     */
+    private void commitBar(Bars bar){
+        if(store != null){
+            store.addBar(workingIndex, bar);
+            if(listener != null){
+                Bars shared = new Bars();
+                shared.MetersList.addAll(bar.MetersList);
+                listener.barParsed(workingIndex, shared);
+            }
+            return;
+        }
+        workingVoice.addSharedElts(bar);
+        if(listener != null){
+            listener.barParsed(workingIndex, workingVoice.BarsList.get(workingVoice.BarsList.size() - 1));
+        }
+    }
     /**
      * Parses a given set of Meters in a given Voice until an EoL character is found
      * utilizes a list of mutable, working meters to manage repeats
@@ -282,11 +376,11 @@ public class ABCParser {
                     break;
                 case 3:
                     // Add all marked for repeat meters to the voice for repeats
-                    workingVoice.addCopyElts(workingBar);
+                    commitBar(workingBar);
                     break;
                 default:
                     // Add all unadded meters and clear what gets repeated otherwise
-                    workingVoice.addCopyElts(workingBar);
+                    commitBar(workingBar);
                     workingBar.clear();
                     break;
                 }
@@ -296,19 +390,14 @@ public class ABCParser {
                 int repeatNum = lexer.getNextElemToken().getVals()[0];
                 // Only for the first repeat token
                 if(repeatNum == 1){         
-                    // Temporarily store the contents to be repeated
-                	Bars tempBar = new Bars();
-                	for (Iterator<Meters> i = workingBar.MetersList.iterator();i.hasNext();){
-                		tempBar.addCopyElts(i.next());
-                	}
+                    // Temporarily store the Meters to be repeated, they are shared not copied
+                    List<Meters> repeated = new ArrayList<Meters>(workingBar.MetersList);
                 	// Recursively parse to the Repeat Barline char, which will add the meters
                 	// Then clear the list and re-add everything we stored before getting the 
                 	// First repeat information
                     parseBar();
                     workingBar.clear();
-                    for (Iterator<Meters> i = tempBar.MetersList.iterator();i.hasNext();){
-                		workingBar.addCopyElts(i.next());
-                	}
+                    workingBar.MetersList.addAll(repeated);
                     // Now get the second repeat information
                     parseBar();
                 } else {
@@ -1,7 +1,37 @@
 package player;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
 import org.junit.Test;
 
+import player.ABC_ADT.Bars;
+import player.ABC_ADT.Voice;
+import player.Tokens.NoteToken;
+import sound.SequencePlayer;
+
 /**
  * Visual checks to make sure headers and selections of music are being processed correctly.
  * Since the info is delivered via System.out, assertEquals is not necessary and thus is 
@@ -50,6 +80,157 @@ public class ABCParserMusicTests {
 		ABCMusic music = parser.parse();
 		System.out.println(music.toString());
 	}
-}
 	
-
+	@Test
+	//The Listener should hear the header first, then every Bar in the order it is added to its Voice
+	public void listenerSeesEveryBar() throws IOException {
+		final List<List<Bars>> heard = new ArrayList<List<Bars>>();
+		ABCParser parser = new ABCParser(new ABCLexer(new FileReader("./sample_abc/fur_elise.abc")));
+		parser.setListener(new ABCParser.Listener() {
+			@Override
+			public void headerParsed(ABCMusic piece) {
+				assertEquals(0, piece.VoicesList.get(0).getElts().size());
+				for (int i = 0; i < piece.VoicesList.size(); i++) {
+					heard.add(new ArrayList<Bars>());
+				}
+			}
+			@Override
+			public void barParsed(int voiceIndex, Bars bar) {
+				heard.get(voiceIndex).add(bar);
+			}
+		});
+		ABCMusic music = parser.parse();
+		for (int i = 0; i < music.VoicesList.size(); i++) {
+			assertEquals(music.VoicesList.get(i).BarsList, heard.get(i));
+		}
+	}
+	
+	@Test
+	//A piece should export as a MIDI file with a Track per Voice and a note on for every note, with no device open
+	public void writeMidiTest() throws IOException, InvalidMidiDataException {
+		ABCMusic music = new ABCParser(new ABCLexer(new FileReader("./sample_abc/invention.abc"))).parse();
+		int notes = 0;
+		for (Voice voice : music.VoicesList) {
+			for (NoteToken note : voice.getElts()) {
+				notes += note.getType() == Tokens.Type.CHORD ? note.getElts().length : note.getType() == Tokens.Type.REST ? 0 : 1;
+			}
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		music.writeMidi(out);
+		Sequence sequence = MidiSystem.getSequence(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(music.VoicesList.size(), sequence.getTracks().length);
+		assertEquals(music.getTicksPerQuarter(), sequence.getResolution());
+		int noteOns = 0;
+		for (Track track : sequence.getTracks()) {
+			for (int i = 0; i < track.size(); i++) {
+				MidiMessage message = track.get(i).getMessage();
+				if (message instanceof ShortMessage && ((ShortMessage) message).getCommand() == ShortMessage.NOTE_ON) {
+					noteOns++;
+				}
+			}
+		}
+		assertEquals(notes, noteOns);
+	}
+	
+	@Test
+	//Each exported Voice should be on the channel it is played on, none on the percussion channel
+	public void exportChannelsTest() throws IOException, InvalidMidiDataException {
+		ABCMusic music = new ABCParser(new ABCLexer(new ABCGenerator(5).setBars(4).setVoices(11).generate())).parse();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		music.writeMidi(out);
+		Sequence[] exported = {music.toSequence(), MidiSystem.getSequence(new ByteArrayInputStream(out.toByteArray()))};
+		for (Sequence sequence : exported) {
+			assertEquals(11, sequence.getTracks().length);
+			for (int t = 0; t < sequence.getTracks().length; t++) {
+				Track track = sequence.getTracks()[t];
+				for (int i = 0; i < track.size(); i++) {
+					MidiMessage message = track.get(i).getMessage();
+					if (message instanceof ShortMessage) {
+						assertEquals(SequencePlayer.getChannel(t), ((ShortMessage) message).getChannel());
+						assertNotEquals(9, ((ShortMessage) message).getChannel());
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	//The MIDI file written straight from the notes should read back as the same events as toSequence()
+	public void writeMidiSequenceTest() throws IOException, InvalidMidiDataException {
+		List<ABCMusic> pieces = new ArrayList<ABCMusic>();
+		pieces.add(new ABCParser(new ABCLexer(new FileReader("./sample_abc/invention.abc"))).parse());
+		pieces.add(new ABCParser(new ABCLexer(new FileReader("./sample_abc/fur_elise.abc"))).parse());
+		pieces.add(new ABCParser(new ABCLexer(new ABCGenerator(7).setBars(80).setVoices(3)
+				.setChordDensity(0.3).setTupletDensity(0.2).generate())).parse());
+		for (ABCMusic music : pieces) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			music.writeMidi(out);
+			Sequence written = MidiSystem.getSequence(new ByteArrayInputStream(out.toByteArray()));
+			Sequence expected = music.toSequence();
+			assertEquals(expected.getResolution(), written.getResolution());
+			assertEquals(expected.getTracks().length, written.getTracks().length);
+			for (int t = 0; t < expected.getTracks().length; t++) {
+				Track expectedTrack = expected.getTracks()[t];
+				Track writtenTrack = written.getTracks()[t];
+				assertEquals(expectedTrack.size(), writtenTrack.size());
+				for (int i = 0; i < expectedTrack.size(); i++) {
+					assertEquals(expectedTrack.get(i).getTick(), writtenTrack.get(i).getTick());
+					assertArrayEquals(expectedTrack.get(i).getMessage().getMessage(), writtenTrack.get(i).getMessage().getMessage());
+				}
+			}
+		}
+	}
+	
+	@Test
+	//A repeated section should share its Meters with the first time through rather than copy them
+	public void repeatSharingTest() {
+		ABCMusic music = new ABCParser(new ABCLexer("X:1\nT:t\nK:C\nC D | E F :| G A |]\n")).parse();
+		List<Bars> bars = music.VoicesList.get(0).BarsList;
+		assertEquals(2, bars.get(0).MetersList.size());
+		assertEquals(3, bars.get(1).MetersList.size());
+		assertSame(bars.get(0).MetersList.get(0), bars.get(1).MetersList.get(0));
+		assertSame(bars.get(0).MetersList.get(1), bars.get(1).MetersList.get(1));
+		// The first ending is parsed once and the section before it is shared by the second ending
+		music = new ABCParser(new ABCLexer("X:1\nT:t\nK:C\nC D |[1 E F :|[2 G A |]\n")).parse();
+		bars = music.VoicesList.get(0).BarsList;
+		assertSame(bars.get(0).MetersList.get(0), bars.get(1).MetersList.get(0));
+	}
+	
+	@Test
+	//A Pipeline given a Reader should close it once the parse ends, even when the parse fails part way through
+	public void pipelineClosesReaderTest() throws InterruptedException {
+		final CountDownLatch closed = new CountDownLatch(1);
+		StringReader reader = new StringReader("X:1\nT:t\nK:C\nC D | E F |\n& G |]\n") {
+			@Override
+			public void close() {
+				super.close();
+				closed.countDown();
+			}
+		};
+		ABCPipeline pipeline = new ABCPipeline(reader);
+		assertEquals("t", pipeline.getPiece().getTitle());
+		assertTrue(closed.await(10, TimeUnit.SECONDS));
+	}
+	
+	@Test(timeout = 10000)
+	//An Error that ends the parse should reach the caller as the cause of the failure, not as a bare NullPointerException
+	public void pipelineErrorTest() throws InterruptedException {
+		final StackOverflowError overflow = new StackOverflowError();
+		Reader reader = new Reader() {
+			@Override
+			public int read(char[] buffer, int offset, int length) {
+				throw overflow;
+			}
+			
+			@Override
+			public void close() {
+			}
+		};
+		try {
+			new ABCPipeline(reader).getPiece();
+			fail("Got a piece from a parse that died");
+		} catch (IllegalStateException e) {
+			assertSame(overflow, e.getCause());
+		}
+	}
+}
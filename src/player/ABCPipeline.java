@@ -0,0 +1,196 @@
+package player;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+import javax.sound.midi.MidiUnavailableException;
+
+import player.ABC_ADT.Bars;
+import player.ABC_ADT.Meters;
+import sound.StreamingPlayer;
+
+/**
+ * Plays a piece while it is still being parsed, the ABCParser runs on its own thread and
+ * hands each finished Bar over a bounded queue, the calling thread renders those Bars to
+ * notes on a StreamingPlayer, which starts sounding once the first few Bars are ready
+ * 
+ * The time until the first note is then that of parsing a few Bars, not the whole piece
+ * 
+ * Note: a Bar is only finished once the ABCParser knows it will not be repeated, so a piece
+ * without any double or repeat barlines is not ready until it has been fully parsed
+ */
+public class ABCPipeline {
+    // Number of Bars rendered before playback begins
+    private static final int LEAD_BARS = 4;
+    // Number of parsed Bars that may wait to be rendered before the parser blocks
+    private static final int QUEUE_CAPACITY = 64;
+    // Marks the end of the parse on the queue
+    private static final ParsedBar END = new ParsedBar(-1, null);
+    
+    private final ABCParser parser;
+    // The input this Pipeline opened on behalf of its caller, closed once parsed, null if the caller owns it
+    private final Reader input;
+    private final BlockingQueue<ParsedBar> queue = new ArrayBlockingQueue<ParsedBar>(QUEUE_CAPACITY);
+    private final CountDownLatch headerParsed = new CountDownLatch(1);
+    private volatile ABCMusic piece;
+    // Whatever ended the parse early, an Error such as a StackOverflowError included
+    private volatile Throwable failure;
+    private Thread parsing;
+    
+    /**
+     * A Bar as parsed along with the index of the Voice it belongs to
+     */
+    private static class ParsedBar {
+        private final int voiceIndex;
+        private final Bars bar;
+        
+        private ParsedBar(int voiceIndex, Bars bar){
+            this.voiceIndex = voiceIndex;
+            this.bar = bar;
+        }
+    }
+    
+    /**
+     * A Pipeline that plays the .abc file contained within the Lexer as it is parsed
+     * 
+     * @param Lexer, a Valid ABCLexer from which to draw Tokens, best built on a Reader
+     */
+    public ABCPipeline(ABCLexer Lexer){
+        this.parser = new ABCParser(Lexer);
+        this.input = null;
+    }
+    
+    /**
+     * A Pipeline that plays the .abc text read from a Reader as it is parsed, the Reader is closed
+     * by the parsing thread once the parse ends, whether it finished or failed part way through
+     * 
+     * @param input, the .abc text, given over to the Pipeline
+     */
+    public ABCPipeline(Reader input){
+        this.parser = new ABCParser(new ABCLexer(input));
+        this.input = input;
+    }
+    
+    /**
+     * Begins parsing on a background thread, does nothing if already begun
+     */
+    public synchronized void start(){
+        if(parsing != null){
+            return;
+        }
+        parser.setListener(new ABCParser.Listener() {
+            @Override
+            public void headerParsed(ABCMusic header) {
+                piece = header;
+                headerParsed.countDown();
+            }
+            @Override
+            public void barParsed(int voiceIndex, Bars bar) {
+                enqueue(new ParsedBar(voiceIndex, bar));
+            }
+        });
+        parsing = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    parser.parse();
+                } catch (Throwable e) {
+                    // Kept for the caller, a thread dying with it would leave the caller no cause
+                    failure = e;
+                } finally {
+                    close();
+                    headerParsed.countDown();
+                    enqueue(END);
+                }
+            }
+        }, "ABCPipeline");
+        parsing.setDaemon(true);
+        parsing.start();
+    }
+    
+    // Closes the input of the parse, closing is done on the parsing thread so no read can be cut short
+    private void close(){
+        if(input == null){
+            return;
+        }
+        try {
+            input.close();
+        } catch (IOException e) {
+            // Everything needed was already read
+            e.printStackTrace();
+        }
+    }
+    
+    // Waits for room on the queue, a parse that is interrupted is abandoned
+    private void enqueue(ParsedBar parsed){
+        try {
+            queue.put(parsed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Parsing was interrupted", e);
+        }
+    }
+    
+    // The failure of the parse as thrown to the caller, an Error wrapped so it is not taken for one of the caller's own
+    private RuntimeException failed(){
+        if(failure instanceof RuntimeException){
+            return (RuntimeException) failure;
+        }
+        return new IllegalStateException("Parsing failed: " + failure, failure);
+    }
+    
+    /**
+     * Begins parsing if need be and waits for the header of the piece
+     * 
+     * @return The ABCMusic of the piece, its Voices fill in as the parse goes on
+     * @throws IllegalArgumentException if the header breaks the ABC Grammar, or IllegalStateException
+     * holding the Error that ended the parse
+     */
+    public ABCMusic getPiece() throws InterruptedException {
+        start();
+        headerParsed.await();
+        if(piece == null){
+            throw failed();
+        }
+        return piece;
+    }
+    
+    /**
+     * Renders each Bar as it arrives and plays them, returning once the whole piece has played
+     * 
+     * Note: an error found part way through the parse stops playback and is thrown here
+     */
+    public void play() throws MidiUnavailableException, InterruptedException {
+        ABCMusic music = getPiece();
+        // The notes are not all known yet, so the ticks come from the header alone
+        int ticksPerQuarter = music.getDefaultTicksPerQuarter();
+        StreamingPlayer player = new StreamingPlayer(music.getQuartersPerMinute(), ticksPerQuarter);
+        ABCRenderer renderer = new ABCRenderer(music, ticksPerQuarter);
+        // Each Voice keeps its own place in time
+        int[] voiceTicks = new int[music.VoicesList.size()];
+        int barCount = 0;
+        try {
+            for(ParsedBar next = queue.take(); next != END; next = queue.take()){
+                for(Meters meter : next.bar.MetersList){
+                    voiceTicks[next.voiceIndex] = renderer.renderMeter(meter, voiceTicks[next.voiceIndex], player);
+                }
+                barCount++;
+                if(barCount == LEAD_BARS){
+                    player.start();
+                }
+            }
+        } catch (InterruptedException e) {
+            player.stop();
+            throw e;
+        }
+        if(failure != null){
+            player.stop();
+            throw failed();
+        }
+        player.finish();
+        player.awaitEnd();
+    }
+}
@@ -0,0 +1,311 @@
+package player;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import player.ABC_ADT.Meters;
+import player.ABC_ADT.NoteVisitor;
+import player.ABC_ADT.Voice;
+import player.Tokens.NoteToken;
+import sound.NoteSink;
+import sound.Pitch;
+import sound.Timeline;
+
+/**
+ * Turns the Voices of an ABCMusic into pitched notes on ticks, keeping the Accidentals met in the
+ * current Meter to itself so that the ABCMusic is only ever read
+ * 
+ * Note: a renderer belongs to the one thread using it, any number of renderers, on any number of
+ * threads, may render the same ABCMusic at once
+ */
+public class ABCRenderer {
+    // The octaves, centred on middle C, told apart by the Accidentals of a Meter
+    private static final int ACCIDENTAL_OCTAVES = 16;
+    private final ABCMusic music;
+    // The ticks in a quarter note, the notes are counted in
+    private final int ticksPerQuarter;
+    // The Sharps and Flats of the Key of the Piece, by note letter from A
+    private final byte[] keySignature;
+    // The Accidentals met so far in the current Meter, by note letter and octave
+    private final int[] keyAccidental = new int[7 * ACCIDENTAL_OCTAVES];
+    // Walks the Meters being rendered, reused for each so rendering copies no lists
+    private final NoteRenderer noteRenderer = new NoteRenderer();
+    
+    /**
+     * @param music, the Piece to be rendered, at the ticks per quarter at which its every note is exact
+     * @throws IllegalArgumentException if the Key of the Piece is not one that can be played
+     */
+    public ABCRenderer(ABCMusic music){
+        this(music, music.getTicksPerQuarter());
+    }
+    
+    /**
+     * @param music, the Piece to be rendered
+     * @param ticksPerQuarter, the ticks in a quarter note, notes that do not last a whole number
+     * of them are rounded down
+     * @throws IllegalArgumentException if the Key of the Piece is not one that can be played
+     */
+    public ABCRenderer(ABCMusic music, int ticksPerQuarter){
+        this.music = music;
+        this.ticksPerQuarter = ticksPerQuarter;
+        this.keySignature = music.getKeySignature();
+    }
+    
+    /**
+     * @param store, a NoteStore to be rendered along with the header it was parsed with, at the
+     * ticks per quarter at which its every note is exact
+     * @throws IllegalArgumentException if the Key of the Piece is not one that can be played
+     */
+    public ABCRenderer(NoteStore store){
+        this(store.getPiece(), store.getTicksPerQuarter());
+    }
+    
+    /**
+     * @return The ticks in a quarter note of the rendered notes
+     */
+    public int getTicksPerQuarter(){
+        return ticksPerQuarter;
+    }
+    
+    /**
+     * Renders every Voice of the Piece from the first tick, each Voice starting at tick 0
+     * 
+     * @param sink, the NoteSink on which to schedule the notes
+     */
+    public void render(NoteSink sink){
+        for(Iterator<Voice> i = music.VoicesList.iterator(); i.hasNext();){
+            renderVoice(i.next(), sink);
+        }
+    }
+    
+    /**
+     * Renders a single Voice of the Piece from tick 0
+     * 
+     * @param voice, the Voice to be rendered
+     * @param sink, the NoteSink on which to schedule the notes
+     * @return The tick at which the Voice ends
+     */
+    public int renderVoice(Voice voice, NoteSink sink){
+        noteRenderer.begin(0, sink);
+        voice.forEachNote(noteRenderer);
+        return noteRenderer.tick;
+    }
+    
+    /**
+     * Renders a single Voice of the Piece from tick 0 into a Timeline of its notes
+     * 
+     * @param voice, the Voice to be rendered
+     * @return The Timeline of the Voice, ordered by the starting tick of each note
+     */
+    public Timeline renderTimeline(Voice voice){
+        Timeline timeline = new Timeline();
+        renderVoice(voice, timeline);
+        return timeline;
+    }
+    
+    /**
+     * Renders every Voice of the Piece from tick 0 into its own Timeline, the Voices rendered at once
+     * across the common ForkJoinPool, each by a renderer of its own, so a Piece of many Voices takes
+     * about as long as its longest Voice
+     * 
+     * @return The Timeline of each Voice, in the order of the Voices
+     */
+    public Timeline[] renderTimelines(){
+        Timeline[] timelines = new Timeline[music.VoicesList.size()];
+        ForkJoinPool.commonPool().invoke(new VoiceTask(timelines, 0, timelines.length));
+        return timelines;
+    }
+    
+    /**
+     * Renders a range of the Voices, splitting it in half until single Voices remain so idle
+     * workers can steal the halves not yet started
+     */
+    private class VoiceTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Timeline[] timelines;
+        private final int from, to;
+        
+        VoiceTask(Timeline[] timelines, int from, int to){
+            this.timelines = timelines;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute(){
+            if(to - from <= 1){
+                for(int i = from; i < to; i++){
+                    timelines[i] = new ABCRenderer(music, ticksPerQuarter).renderTimeline(music.VoicesList.get(i));
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new VoiceTask(timelines, from, middle), new VoiceTask(timelines, middle, to));
+            }
+        }
+    }
+    
+    /**
+     * Transforms the NoteTokens of a Meter into Pitches which are then subscribed according to
+     * timing to the given NoteSink, the Accidentals of the Meter are reset at its end
+     * 
+     * @param meter, the Meter to be rendered
+     * @param startTick, the tick at which the Meter starts
+     * @param sink, the NoteSink on which to schedule the notes
+     * @return The tick at which the Meter ends
+     */
+    public int renderMeter(Meters meter, int startTick, NoteSink sink){
+        noteRenderer.begin(startTick, sink);
+        meter.forEachNote(noteRenderer);
+        return noteRenderer.tick;
+    }
+    
+    /**
+     * Renders the NoteTokens of the Meters it is walked over, keeping the tick reached so far
+     */
+    private class NoteRenderer extends NoteVisitor {
+        private int tick;
+        private NoteSink sink;
+        
+        void begin(int startTick, NoteSink sink){
+            this.tick = startTick;
+            this.sink = sink;
+        }
+        
+        @Override
+        public void visitNote(NoteToken workingNote){
+            int startTick = tick;
+            if(workingNote.getType() == Tokens.Type.CHORD){
+                int noteTicks = 0;
+                for(int m = 0; m < workingNote.getElts().length; m++){
+                    NoteToken element = workingNote.getElts()[m];
+                    int newNote = constructNote(element);
+                    noteTicks = ticks(element.getLength()[0], element.getLength()[1]);
+                    sink.addNote(newNote, startTick, noteTicks);
+                }   
+                startTick += noteTicks;
+            } else if(workingNote.getType() == Tokens.Type.REST) {
+                // Don't need to make rests, just skip their time
+                startTick += ticks(workingNote.getLength()[0], workingNote.getLength()[1]);
+            } else {
+                int newNote = constructNote(workingNote);
+                int noteTicks = ticks(workingNote.getLength()[0], workingNote.getLength()[1]);
+                sink.addNote(newNote, startTick, noteTicks);
+                startTick += noteTicks;
+            }
+            tick = startTick;
+        }
+        
+        @Override
+        public void endMeter(Meters meter){
+            // Reset Accidentals at the end of the Meter
+            Arrays.fill(keyAccidental, 0);
+        }
+    }
+    
+    // The ticks lasted by a note numerator/denominator of the default length
+    private int ticks(int numerator, int denominator){
+        return TickScale.ticks(numerator, denominator, music.getNoteLength(), ticksPerQuarter);
+    }
+    
+    /**
+     * Renders every Voice held in a NoteStore from the first tick, just as render() would the
+     * Voices of the ABCMusic the store was parsed with, at the ticks per quarter of this renderer
+     * 
+     * @param store, the NoteStore of the Piece given to this renderer
+     * @param sink, the NoteSink on which to schedule the notes
+     */
+    public void render(NoteStore store, NoteSink sink){
+        for(int voice = 0; voice < store.getVoiceCount(); voice++){
+            int startTick = 0;
+            for(int bar = store.getBarStart(voice); bar < store.getBarEnd(voice); bar++){
+                for(int meter = store.getMeterStart(bar); meter < store.getMeterEnd(bar); meter++){
+                    startTick = renderMeter(store, meter, startTick, sink);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Renders a Meter of a NoteStore as renderMeter() does a Meters, reading the columns in place
+     * 
+     * @return The tick at which the Meter ends
+     */
+    private int renderMeter(NoteStore store, int meter, int startTick, NoteSink sink){
+        int[] noteLength = music.getNoteLength();
+        int end = store.getRowEnd(meter);
+        for(int row = store.getRowStart(meter); row < end; row += 1 + store.getChildCount(row)){
+            Tokens.Type type = store.getType(row);
+            if(type == Tokens.Type.CHORD){
+                int noteTicks = 0;
+                for(int child = row + 1; child <= row + store.getChildCount(row); child++){
+                    int newNote = constructNote(store.getNote(child), store.getOctave(child), store.getAccidental(child));
+                    noteTicks = TickScale.ticks(store.getNumerator(child), store.getDenominator(child), noteLength, ticksPerQuarter);
+                    sink.addNote(newNote, startTick, noteTicks);
+                }
+                startTick += noteTicks;
+            } else if(type == Tokens.Type.REST) {
+                startTick += TickScale.ticks(store.getNumerator(row), store.getDenominator(row), noteLength, ticksPerQuarter);
+            } else {
+                int newNote = constructNote(store.getNote(row), store.getOctave(row), store.getAccidental(row));
+                int noteTicks = TickScale.ticks(store.getNumerator(row), store.getDenominator(row), noteLength, ticksPerQuarter);
+                sink.addNote(newNote, startTick, noteTicks);
+                startTick += noteTicks;
+            }
+        }
+        // Reset Accidentals at the end of the Meter
+        Arrays.fill(keyAccidental, 0);
+        return startTick;
+    }
+    
+    /**
+     * Turns a NoteToken into the midi note of its Pitch by enforcing the Key of the Piece and the
+     * Accidentals encountered in the given meter
+     * 
+     * @param workingNote, the NoteToken from which to find a midi note
+     * @return The midi note of the Pitch the given NoteToken represents
+     */
+    private int constructNote(NoteToken workingNote){
+        return constructNote(workingNote.getNote(), workingNote.getOctave(), workingNote.getAccidental());
+    }
+    
+    /**
+     * Turns the fields of a note into the midi note of its Pitch, enforcing the Key of the Piece and
+     * the Accidentals encountered in the given meter, without making any Pitch
+     * 
+     * @param note, the basenote, upper case below middle C and lower case above
+     * @param noteOctave, the octaves by which the basenote is raised or lowered
+     * @param accidental, the accidental written on the note
+     * @return The midi note of the Pitch that represents the given note
+     */
+    private int constructNote(char note, int noteOctave, int accidental){
+        char letter = note;
+        int octave = 0;               
+        // Lower case notes are an octave above their upper case
+        if(!('A' <= note && note <= 'G')){
+        	octave++;
+        	letter = Character.toUpperCase(note);
+        }
+        // Transpose by the octaves
+        octave+=noteOctave;
+        int index = letter - 'A';
+        if(index < 0 || index >= keySignature.length){
+            throw new IllegalArgumentException(letter + " must be in the range A-G");
+        }
+        int key = keySignature[index];
+        // Octaves far outside the piano share the slot at the edge of the range
+        int slot = index * ACCIDENTAL_OCTAVES
+                + Math.max(0, Math.min(ACCIDENTAL_OCTAVES - 1, octave + ACCIDENTAL_OCTAVES / 2));
+        // Collect accidentals, use them to modify the accidental list
+        if(accidental == Integer.MIN_VALUE){
+            keyAccidental[slot] = 0;
+        } else if(accidental == 0){
+            keyAccidental[slot] = -1*key;
+        } else {
+            keyAccidental[slot] = -1*key+accidental;
+        }
+        // Now modify by the accidental and key signature in tandem
+        return Pitch.midiNote(letter, octave, keyAccidental[slot] + key);
+    }
+}
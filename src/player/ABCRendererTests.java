@@ -0,0 +1,184 @@
+package player;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import player.ABC_ADT.Bars;
+import player.ABC_ADT.Meters;
+import player.ABC_ADT.NoteVisitor;
+import player.ABC_ADT.Voice;
+import player.Tokens.NoteToken;
+import sound.NoteSink;
+import sound.Timeline;
+
+/**
+ * Tests that rendering reads the ABCMusic only, so renders in turn or at once agree
+ */
+public class ABCRendererTests {
+
+    // Records every note as text, in the order it is added
+    private static class RecordingSink implements NoteSink {
+        final StringBuilder notes = new StringBuilder();
+
+        @Override
+        public void addNote(int note, int startTick, int numTicks) {
+            notes.append(note).append('@').append(startTick).append('+').append(numTicks).append('\n');
+        }
+    }
+
+    private static String render(ABCMusic music) {
+        RecordingSink sink = new RecordingSink();
+        new ABCRenderer(music).render(sink);
+        return sink.notes.toString();
+    }
+
+    @Test
+    //Accidentals met in one rendering should not carry into the next
+    public void renderTwiceTest() throws IOException {
+        ABCMusic music = new ABCParser(new ABCLexer(new FileReader("./sample_abc/fur_elise.abc"))).parse();
+        assertEquals(render(music), render(music));
+    }
+
+    @Test
+    //Accidentals apply to their own note and the Key to every other, nothing carries past a barline
+    public void accidentalResetTest() {
+        ABCMusic music = new ABCParser(new ABCLexer("X:1\nT:t\nK:G\n^c c F | c F =F F|]\n")).parse();
+        assertEquals("73@0+16\n72@16+16\n66@32+16\n72@48+16\n66@64+16\n65@80+16\n66@96+16\n", render(music));
+    }
+
+    @Test
+    //Many threads rendering the same piece at once should each get the notes of a lone render
+    public void concurrentRenderTest() throws Exception {
+        final ABCMusic music = new ABCParser(new ABCLexer(
+                new ABCGenerator(3).setBars(400).setVoices(3).setAccidentalDensity(0.5).generate())).parse();
+        String expected = render(music);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> renders = new ArrayList<Future<String>>();
+            for (int i = 0; i < 32; i++) {
+                renders.add(pool.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return render(music);
+                    }
+                }));
+            }
+            for (Future<String> each : renders) {
+                assertEquals(expected, each.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    //Walking a Voice should visit the same NoteTokens as getElts(), each Meter inside its Bar
+    public void forEachNoteTest() {
+        ABCMusic music = new ABCParser(new ABCLexer(
+                new ABCGenerator(5).setBars(60).setVoices(2).setRepeatDensity(0.3).generate())).parse();
+        for (Voice voice : music.VoicesList) {
+            final List<NoteToken> visited = new ArrayList<NoteToken>();
+            final int[] depth = new int[1];
+            final int[] bars = new int[1];
+            voice.forEachNote(new NoteVisitor() {
+                @Override public void startBar(Bars bar) {assertEquals(0, depth[0]++); bars[0]++;}
+                @Override public void startMeter(Meters meter) {assertEquals(1, depth[0]++);}
+                @Override public void endMeter(Meters meter) {assertEquals(2, depth[0]--);}
+                @Override public void endBar(Bars bar) {assertEquals(1, depth[0]--);}
+                @Override public void visitNote(NoteToken note) {
+                    assertEquals(2, depth[0]);
+                    visited.add(note);
+                }
+            });
+            assertEquals(0, depth[0]);
+            assertEquals(voice.BarsList.size(), bars[0]);
+            List<NoteToken> copied = voice.getElts();
+            assertEquals(copied.size(), visited.size());
+            for (int i = 0; i < copied.size(); i++) {
+                assertTrue(copied.get(i) == visited.get(i));
+            }
+        }
+    }
+
+    @Test
+    //Triplets should last exactly their share of the beat, with the ticks raised to fit them
+    public void tripletTicksTest() {
+        ABCMusic music = new ABCParser(new ABCLexer("X:1\nT:t\nL:1/8\nK:C\n(3CDE F G (3ABc d e|]\n")).parse();
+        assertEquals(32, music.getDefaultTicksPerQuarter());
+        assertEquals(96, music.getTicksPerQuarter());
+        long[] events = new ABCRenderer(music).renderTimeline(music.VoicesList.get(0)).toArray();
+        assertEquals(10, events.length);
+        assertEquals(32, Timeline.getTicks(events[0]));
+        assertEquals(64, Timeline.getStartTick(events[2]));
+        assertEquals(96, Timeline.getStartTick(events[3]));
+        assertEquals(48, Timeline.getTicks(events[3]));
+        assertEquals(4 * 96, Timeline.getStartTick(events[9]) + Timeline.getTicks(events[9]));
+    }
+
+    @Test
+    //However many tuplets a long piece holds, every Voice should end exactly on the end of its last Meter
+    public void noDriftTest() {
+        ABCMusic music = new ABCParser(new ABCLexer(
+                new ABCGenerator(11).setBars(500).setVoices(2).setTupletDensity(0.5).setChordDensity(0.3).generate())).parse();
+        ABCRenderer renderer = new ABCRenderer(music);
+        for (Voice voice : music.VoicesList) {
+            Timeline timeline = renderer.renderTimeline(voice);
+            long[] events = timeline.toArray();
+            for (int i = 1; i < events.length; i++) {
+                assertTrue(Timeline.getStartTick(events[i - 1]) <= Timeline.getStartTick(events[i]));
+            }
+            // The generator fills every Meter, save the empty ones parsed at the end of a line
+            int meters = 0;
+            for (Bars bar : voice.BarsList) {
+                for (Meters meter : bar.MetersList) {
+                    meters += meter.getElts().isEmpty() ? 0 : 1;
+                }
+            }
+            assertEquals(meters * 4 * renderer.getTicksPerQuarter(), renderer.renderVoice(voice, new RecordingSink()));
+        }
+    }
+
+    @Test
+    //The Key should sharpen or flatten every note it names, in every octave, and no other
+    public void keySignatureTest() {
+        String notes = "F, C G D A E B c|]\n";
+        assertEquals("53@0+16\n60@16+16\n67@32+16\n62@48+16\n69@64+16\n64@80+16\n71@96+16\n72@112+16\n",
+                render(new ABCParser(new ABCLexer("X:1\nT:t\nK:C\n" + notes)).parse()));
+        assertEquals("54@0+16\n61@16+16\n68@32+16\n63@48+16\n69@64+16\n64@80+16\n71@96+16\n73@112+16\n",
+                render(new ABCParser(new ABCLexer("X:1\nT:t\nK:E\n" + notes)).parse()));
+        assertEquals("53@0+16\n60@16+16\n67@32+16\n62@48+16\n69@64+16\n63@80+16\n70@96+16\n72@112+16\n",
+                render(new ABCParser(new ABCLexer("X:1\nT:t\nK:Gm\n" + notes)).parse()));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    //A Key of more than seven Flats cannot be played
+    public void impossibleKeyTest() {
+        new ABCRenderer(new ABCParser(new ABCLexer("X:1\nT:t\nK:Fb\nC|]\n")).parse());
+    }
+
+    @Test
+    //Voices rendered at once should each get the notes of rendering that Voice alone
+    public void renderTimelinesTest() {
+        ABCMusic music = new ABCParser(new ABCLexer(new ABCGenerator(13).setBars(200).setVoices(6)
+                .setChordDensity(0.3).setTupletDensity(0.2).setAccidentalDensity(0.4).generate())).parse();
+        ABCRenderer renderer = new ABCRenderer(music);
+        Timeline[] timelines = renderer.renderTimelines();
+        assertEquals(music.VoicesList.size(), timelines.length);
+        for (int v = 0; v < timelines.length; v++) {
+            assertTrue(timelines[v].size() > 0);
+            assertArrayEquals(renderer.renderTimeline(music.VoicesList.get(v)).toArray(), timelines[v].toArray());
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package player;
+
+/**
+ * A single pass scanner for the Token sequences understood by the ABCLexer, replaces the
+ * per position regular expressions with a hand written state machine that dispatches on the
+ * first significant character of a token and then walks each character of that token once
+ *
+ * Each rule matches exactly the ABC Grammar regex noted beside it, including its quirks
+ * (possessive and reluctant quantifiers, alternation order and Type priority), so the tokens
+ * produced are identical to those of the original regex driven ABCLexer
+ */
+class ABCScanner {
+	// Storage for the input being scanned
+	private final CharSequence input;
+	// End of the last token found by scan()
+	private int tokenEnd;
+
+	/**
+	 * Creates a Scanner over a sequence of characters
+	 *
+	 * @param input
+	 *            , the characters upon which to build an ABCScanner
+	 */
+	ABCScanner(CharSequence input) {
+		this.input = input;
+	}
+
+	/**
+	 * Determines the Type of the token that starts at position, ignoring any
+	 * leading whitespace, the extent of that token is kept for getTokenEnd()
+	 *
+	 * Note: a run of leading whitespace containing a newline is an EoL, just
+	 * as with the regexes where EoL is searched for before all other Types
+	 *
+	 * @param position
+	 *            , the location in the input from which to scan
+	 * @return A Tokens.Type corresponding to the token at position, or null if
+	 *         no token can be built there
+	 */
+	Tokens.Type scan(int position) {
+		int length = input.length();
+		int start = position;
+		boolean sawNewLine = false;
+		// Skip the leading whitespace, noting any newline characters in it
+		while (start < length && isWhitespace(input.charAt(start))) {
+			if (input.charAt(start) == '\n' || input.charAt(start) == '\r') {
+				sawNewLine = true;
+			}
+			start++;
+		}
+		if (sawNewLine) {
+			tokenEnd = start;
+			return Tokens.Type.END_OF_LINE;
+		}
+		if (start >= length) {
+			return null;
+		}
+		// Candidates are tried in the order of Tokens.Type to keep its priority
+		int end;
+		switch (input.charAt(start)) {
+		case 'X':
+			return found(matchNumberField(start, 'X'), Tokens.Type.FIELD_NUMBER);
+		case 'T':
+			return found(matchTextField(start, 'T'), Tokens.Type.FIELD_TITLE);
+		case 'C':
+			end = matchTextField(start, 'C');
+			if (end >= 0) {
+				return found(end, Tokens.Type.FIELD_COMPOSER);
+			}
+			return found(matchNote(start), Tokens.Type.NOTE);
+		case 'L':
+			return found(matchDefaultLength(start), Tokens.Type.FIELD_DEFAULT_LENGTH);
+		case 'M':
+			return found(matchMeter(start), Tokens.Type.FIELD_METER);
+		case 'Q':
+			return found(matchNumberField(start, 'Q'), Tokens.Type.FIELD_TEMPO);
+		case 'V':
+			return found(matchTextField(start, 'V'), Tokens.Type.FIELD_VOICE);
+		case 'K':
+			return found(matchKey(start), Tokens.Type.FIELD_KEY);
+		case 'A': case 'B': case 'D': case 'E': case 'F': case 'G':
+		case 'a': case 'b': case 'c': case 'd': case 'e': case 'f': case 'g':
+		case '^': case '_': case '=':
+			return found(matchNote(start), Tokens.Type.NOTE);
+		case 'z':
+			return found(matchRest(start), Tokens.Type.REST);
+		case '(':
+			return found(matchTuplet(start), Tokens.Type.TUPLET);
+		case '[':
+			end = matchChord(start);
+			if (end >= 0) {
+				return found(end, Tokens.Type.CHORD);
+			}
+			end = matchBarline(start);
+			if (end >= 0) {
+				return found(end, Tokens.Type.BARLINE);
+			}
+			return found(matchRepeat(start), Tokens.Type.REPEAT);
+		case '|':
+			end = matchBarline(start);
+			if (end >= 0) {
+				return found(end, Tokens.Type.BARLINE);
+			}
+			return found(matchRepeat(start), Tokens.Type.REPEAT);
+		case ':':
+			return found(matchBarline(start), Tokens.Type.BARLINE);
+		case '%':
+			return found(matchComment(start), Tokens.Type.COMMENT);
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * @return The location just past the token found by the last scan()
+	 */
+	int getTokenEnd() {
+		return tokenEnd;
+	}
+
+	// Records the end of a successful match and hands back its type
+	private Tokens.Type found(int end, Tokens.Type type) {
+		if (end < 0) {
+			return null;
+		}
+		tokenEnd = end;
+		return type;
+	}
+
+	// The character at index, or a NUL that no rule accepts past the end of input
+	private char at(int index) {
+		return index < input.length() ? input.charAt(index) : '\0';
+	}
+
+	// Matches the \s class of the regexes
+	static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\u000B'
+				|| c == '\f';
+	}
+
+	// Matches the [\w \t\p{Punct}] class of the regexes, printable ASCII and tabs
+	static boolean isText(char c) {
+		return c == '\t' || (c >= ' ' && c <= '~');
+	}
+
+	static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	static boolean isBasenote(char c) {
+		return (c >= 'A' && c <= 'G') || (c >= 'a' && c <= 'g');
+	}
+
+	// Matches the [A-Ga-g\^_=0-9,'/z] class allowed inside of chords and tuplets
+	private static boolean isCompoundElement(char c) {
+		return isBasenote(c) || isDigit(c) || c == '^' || c == '_' || c == '='
+				|| c == ',' || c == '\'' || c == '/' || c == 'z';
+	}
+
+	private int skipDigits(int index) {
+		while (isDigit(at(index))) {
+			index++;
+		}
+		return index;
+	}
+
+	private int skipSpaces(int index) {
+		while (at(index) == ' ') {
+			index++;
+		}
+		return index;
+	}
+
+	// "F:[\w \t\p{Punct}]++" for the Title, Composer and Voice fields
+	private int matchTextField(int start, char field) {
+		if (at(start) != field || at(start + 1) != ':' || !isText(at(start + 2))) {
+			return -1;
+		}
+		int index = start + 3;
+		while (isText(at(index))) {
+			index++;
+		}
+		return index;
+	}
+
+	// "F:[ ]*+[0-9]++" for the Number and Tempo fields
+	private int matchNumberField(int start, char field) {
+		if (at(start) != field || at(start + 1) != ':') {
+			return -1;
+		}
+		int index = skipSpaces(start + 2);
+		if (!isDigit(at(index))) {
+			return -1;
+		}
+		return skipDigits(index);
+	}
+
+	// "L:[ ]*+[0-9]+/[0-9]+"
+	private int matchDefaultLength(int start) {
+		if (at(start) != 'L' || at(start + 1) != ':') {
+			return -1;
+		}
+		int index = skipSpaces(start + 2);
+		if (!isDigit(at(index))) {
+			return -1;
+		}
+		index = skipDigits(index);
+		if (at(index) != '/' || !isDigit(at(index + 1))) {
+			return -1;
+		}
+		return skipDigits(index + 1);
+	}
+
+	// "M:[ ]*+((C\|?)|(\d+?/\d+?))", the reluctant denominator only ever takes one digit
+	private int matchMeter(int start) {
+		if (at(start) != 'M' || at(start + 1) != ':') {
+			return -1;
+		}
+		int index = skipSpaces(start + 2);
+		if (at(index) == 'C') {
+			return at(index + 1) == '|' ? index + 2 : index + 1;
+		}
+		if (!isDigit(at(index))) {
+			return -1;
+		}
+		index = skipDigits(index);
+		if (at(index) != '/' || !isDigit(at(index + 1))) {
+			return -1;
+		}
+		return index + 2;
+	}
+
+	// "K:[ ]*+[A-Ga-g][m]?[#b]?"
+	private int matchKey(int start) {
+		if (at(start) != 'K' || at(start + 1) != ':') {
+			return -1;
+		}
+		int index = skipSpaces(start + 2);
+		if (!isBasenote(at(index))) {
+			return -1;
+		}
+		index++;
+		if (at(index) == 'm') {
+			index++;
+		}
+		if (at(index) == '#' || at(index) == 'b') {
+			index++;
+		}
+		return index;
+	}
+
+	// "(\^{1,2}+|_{1,2}+|=)?[A-Ga-g](,++|'++)?+([0-9]*/?[0-9]*)?+"
+	private int matchNote(int start) {
+		int index = start;
+		char accidental = at(index);
+		if (accidental == '^' || accidental == '_') {
+			index++;
+			if (at(index) == accidental) {
+				index++;
+			}
+		} else if (accidental == '=') {
+			index++;
+		}
+		if (!isBasenote(at(index))) {
+			return -1;
+		}
+		index++;
+		char octave = at(index);
+		if (octave == ',' || octave == '\'') {
+			while (at(index) == octave) {
+				index++;
+			}
+		}
+		return matchLength(index);
+	}
+
+	// "[0-9]*/?[0-9]*" the optional length suffix of notes and rests
+	private int matchLength(int index) {
+		index = skipDigits(index);
+		if (at(index) == '/') {
+			index++;
+		}
+		return skipDigits(index);
+	}
+
+	// "z[0-9]*/?[0-9]*"
+	private int matchRest(int start) {
+		if (at(start) != 'z') {
+			return -1;
+		}
+		return matchLength(start + 1);
+	}
+
+	// "\([234][A-Ga-g\^_=0-9,'/z]++"
+	private int matchTuplet(int start) {
+		if (at(start) != '(' || at(start + 1) < '2' || at(start + 1) > '4'
+				|| !isCompoundElement(at(start + 2))) {
+			return -1;
+		}
+		int index = start + 3;
+		while (isCompoundElement(at(index))) {
+			index++;
+		}
+		return index;
+	}
+
+	// "\[[A-Ga-g\^_=0-9,'/z]+\]"
+	private int matchChord(int start) {
+		if (at(start) != '[' || !isCompoundElement(at(start + 1))) {
+			return -1;
+		}
+		int index = start + 2;
+		while (isCompoundElement(at(index))) {
+			index++;
+		}
+		return at(index) == ']' ? index + 1 : -1;
+	}
+
+	// "((\|[\]\|:])|(\[\|)|(:\|)|(\|(?!(\[[12]))))" with the alternatives in order
+	private int matchBarline(int start) {
+		char first = at(start);
+		char second = at(start + 1);
+		if (first == '|' && (second == ']' || second == '|' || second == ':')) {
+			return start + 2;
+		}
+		if ((first == '[' || first == ':') && second == '|') {
+			return start + 2;
+		}
+		if (first == '|' && !(second == '[' && (at(start + 2) == '1' || at(start + 2) == '2'))) {
+			return start + 1;
+		}
+		return -1;
+	}
+
+	// "\|?+\[[12]"
+	private int matchRepeat(int start) {
+		int index = start;
+		if (at(index) == '|') {
+			index++;
+		}
+		if (at(index) != '[' || (at(index + 1) != '1' && at(index + 1) != '2')) {
+			return -1;
+		}
+		return index + 2;
+	}
+
+	// "%[\w \t\p{Punct}]*+"
+	private int matchComment(int start) {
+		if (at(start) != '%') {
+			return -1;
+		}
+		int index = start + 1;
+		while (isText(at(index))) {
+			index++;
+		}
+		return index;
+	}
+}
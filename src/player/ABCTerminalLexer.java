@@ -1,6 +1,6 @@
 package player;
 
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -10,10 +10,12 @@ public class ABCTerminalLexer {
     private String nonTerminal;
     // Location in the string currently operating
     private int position;
-    // Mapping of terminals to the appropriate regexes
-    private Map<Terminals, String> TerminalRegex = new HashMap<Terminals, String>();
-    // The string used to check for and return values
-    private String lookFor;
+    // Mapping of terminals to the appropriate regexes, shared by all Lexers
+    private static final Map<Terminals, Pattern> TerminalRegex = BuildTerminalRegex();
+    // Matcher over the input, reused for every check
+    private final Matcher lookFor;
+    // End of the Terminal found by the last check
+    private int matchEnd;
     // All the valid Terminals used for construction of the Regex Table
     public enum Terminals {
         DIGIT,
@@ -36,23 +38,33 @@ public class ABCTerminalLexer {
     public ABCTerminalLexer(String input, int startLoc) {
         this.nonTerminal = input;
         this.position = startLoc;
-        BuildTerminalRegex();
+        this.lookFor = TerminalRegex.get(Terminals.TEXT).matcher(input);
     }
     
     /**
      * Creates a Mapping between Terminals for the ABC Grammar of the Lexer
-     * and a regular expression that represents that terminal
+     * and a precompiled regular expression that represents that terminal with
+     * any leading whitespace, built once for all Lexers
+     * 
+     * @return A Mapping of every Terminal to its Pattern
      */
-    private void BuildTerminalRegex(){
-        TerminalRegex.put(Terminals.DIGIT, "[0-9]++");
-        TerminalRegex.put(Terminals.TEXT, "[\\w \\t\\p{Punct}]++");
-        TerminalRegex.put(Terminals.FRACTION, "/");
-        TerminalRegex.put(Terminals.KEY_ACCIDENTAL, "[#b]");
-        TerminalRegex.put(Terminals.MODE_MINOR, "[m]");
-        TerminalRegex.put(Terminals.OCTAVE, "((,)++|(')++)");
-        TerminalRegex.put(Terminals.ACCIDENTAL, "[\\^{1,2}_{1,2}=]");
-        TerminalRegex.put(Terminals.BASENOTE, "[A-Ga-g]");
-        TerminalRegex.put(Terminals.REST, "[z]");
+    private static Map<Terminals, Pattern> BuildTerminalRegex(){
+        Map<Terminals, String> regex = new EnumMap<Terminals, String>(Terminals.class);
+        regex.put(Terminals.DIGIT, "[0-9]++");
+        regex.put(Terminals.TEXT, "[\\w \\t\\p{Punct}]++");
+        regex.put(Terminals.FRACTION, "/");
+        regex.put(Terminals.KEY_ACCIDENTAL, "[#b]");
+        regex.put(Terminals.MODE_MINOR, "[m]");
+        regex.put(Terminals.OCTAVE, "((,)++|(')++)");
+        regex.put(Terminals.ACCIDENTAL, "[\\^{1,2}_{1,2}=]");
+        regex.put(Terminals.BASENOTE, "[A-Ga-g]");
+        regex.put(Terminals.REST, "[z]");
+        
+        Map<Terminals, Pattern> compiled = new EnumMap<Terminals, Pattern>(Terminals.class);
+        for (Map.Entry<Terminals, String> entry : regex.entrySet()) {
+            compiled.put(entry.getKey(), Pattern.compile("\\s*" + entry.getValue()));
+        }
+        return compiled;
     }
     /**
      * Determines if a given Terminal exists at the current position that the ABCTerminalLexer is at
@@ -61,9 +73,16 @@ public class ABCTerminalLexer {
      * @return A boolean representing if the desired Terminal exists at the current location of the Lexer
      */
     public boolean IsItThere(Terminals It){
-        lookFor = "^.{" + position + "}\\s*" +
-                         TerminalRegex.get(It) + ".*";
-        return nonTerminal.matches(lookFor);
+        if (position > nonTerminal.length()) {
+            return false;
+        }
+        lookFor.usePattern(TerminalRegex.get(It));
+        lookFor.region(position, nonTerminal.length());
+        if (lookFor.lookingAt()) {
+            matchEnd = lookFor.end();
+            return true;
+        }
+        return false;
     }
     // The generic fetch that gets the string that matches the
     // Terminal still loaded in lookFor if it exists
@@ -78,12 +97,12 @@ public class ABCTerminalLexer {
      * @return A String matching the Terminal in system state with leading whitespace removed
      */
     private String FetchGeneric(){
-        Pattern search = Pattern.compile(lookFor.substring(0,(lookFor.length()-2)));
-        Matcher fetch = search.matcher(nonTerminal);
-        fetch.find();
-        String value = fetch.group().substring(position);
-        position += value.length();
-        return value.replaceAll("^\\s","");
+        String value = nonTerminal.substring(position, matchEnd);
+        position = matchEnd;
+        if (value.length() > 0 && ABCScanner.isWhitespace(value.charAt(0))) {
+            return value.substring(1);
+        }
+        return value;
     }
     // Returns the matching digit
     public int FetchDigit(){
@@ -1,5 +1,6 @@
 package player;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -23,13 +24,38 @@ public interface ABC_ADT {
     public List<NoteToken> getElts();
     public void clear();
     @Override public String toString();
+    /**
+     * Walks every NoteToken in order, in place and without copying any list, telling the visitor
+     * where each Bar and Meter starts and ends along the way
+     * 
+     * @param visitor, the NoteVisitor to be shown the NoteTokens
+     */
+    public void forEachNote(NoteVisitor visitor);
+    
+    /**
+     * Receives the NoteTokens of an ADT from forEachNote(), the boundary callbacks do nothing
+     * unless overridden
+     * 
+     * Note: the ADT must not be changed during the walk
+     */
+    public abstract class NoteVisitor {
+        public void startBar(Bars bar) {}
+        public void endBar(Bars bar) {}
+        public void startMeter(Meters meter) {}
+        public void endMeter(Meters meter) {}
+        /**
+         * @param note, the next NoteToken of the walk, a Chord is visited whole
+         */
+        public abstract void visitNote(NoteToken note);
+    }
     
     /**
      * The Voice Class, contains list of Bars as well as a Name    
      * 
      *
      */
-    public class Voice implements ABC_ADT{
+    public class Voice implements ABC_ADT, Serializable{
+        private static final long serialVersionUID = 1L;
         private final String name;
         
         List<Bars> BarsList = new ArrayList<Bars>();
@@ -50,6 +76,15 @@ public interface ABC_ADT {
             return returnList;
         }
         
+        /**
+         * Walks the Bars of the Voice in order
+         */
+        public void forEachNote(NoteVisitor visitor){
+            for (int i = 0; i < BarsList.size(); i++){
+                BarsList.get(i).forEachNote(visitor);
+            }
+        }
+        
         /**
          * Mutates the Voice to contain an additional appended Bar
          * 
@@ -73,6 +108,21 @@ public interface ABC_ADT {
             addElts(tempBar);
         }
         
+        /**
+         * Mutates the Voice to contain an additional appended Bar holding the same Meters as the
+         * given Bar, the Bar added != the bar given but its Meters are shared rather than copied
+         * 
+         * Note: used for repeats, so a repeated section costs a reference per Meter instead of a
+         * copy of its notes, the shared Meters must not be mutated afterwards
+         * 
+         * @param bar, a Bar whose Meters are to be added
+         */
+        public void addSharedElts(Bars bar){
+            Bars tempBar = new Bars();
+            tempBar.MetersList.addAll(bar.MetersList);
+            addElts(tempBar);
+        }
+        
         /**
          * @return The Name of the Voice
          */
@@ -104,7 +154,8 @@ public interface ABC_ADT {
      * 
      *
      */
-    public class Bars implements ABC_ADT{
+    public class Bars implements ABC_ADT, Serializable{
+        private static final long serialVersionUID = 1L;
         
         List<Meters> MetersList = new ArrayList<Meters>();
         //Empty constructor
@@ -121,6 +172,17 @@ public interface ABC_ADT {
             return returnList;
         }
         
+        /**
+         * Walks the Meters of the Bar in order, between the start and end of the Bar
+         */
+        public void forEachNote(NoteVisitor visitor){
+            visitor.startBar(this);
+            for (int i = 0; i < MetersList.size(); i++){
+                MetersList.get(i).forEachNote(visitor);
+            }
+            visitor.endBar(this);
+        }
+        
         /**
          * Mutates the Bar to contain an additional appended Meter
          * 
@@ -138,9 +200,8 @@ public interface ABC_ADT {
          */
         public void addCopyElts(Meters meter){
             Meters tempMeter = new Meters();
-            for(Iterator<NoteToken> i = meter.getElts().iterator(); i.hasNext();){
-                tempMeter.addElts(i.next());
-            }
+            // NoteTokens are immutable, so sharing them straight from the other list is safe
+            tempMeter.NotesList.addAll(meter.NotesList);
             addElts(tempMeter);
         }
         
@@ -173,7 +234,8 @@ public interface ABC_ADT {
      * 
      *
      */
-    public class Meters implements ABC_ADT{
+    public class Meters implements ABC_ADT, Serializable{
+        private static final long serialVersionUID = 1L;
         
         List<NoteToken> NotesList = new ArrayList<NoteToken>();
         // Empty Constructor
@@ -191,6 +253,17 @@ public interface ABC_ADT {
             return returnList;
         }
         
+        /**
+         * Walks the NoteTokens of the Meter in order, between the start and end of the Meter
+         */
+        public void forEachNote(NoteVisitor visitor){
+            visitor.startMeter(this);
+            for (int i = 0; i < NotesList.size(); i++){
+                visitor.visitNote(NotesList.get(i));
+            }
+            visitor.endMeter(this);
+        }
+        
         /**
          * Mutates the Meter to contain an additional appended NoteToken
          * 
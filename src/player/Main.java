@@ -1,59 +1,258 @@
 package player;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiUnavailableException;
+
+import sound.SequencePlayer;
 
 /**
  * Main entry point of your application.
  */
 public class Main {
+    // Parsed pieces by the hash of their text, saved under -Dplayer.cache.dir when it is set
+    // up to -Dplayer.cache.disk bytes
+    private static final ABCCache CACHE = new ABCCache(Long.getLong("player.cache.weight", 16L << 20),
+            System.getProperty("player.cache.dir") == null ? null : new File(System.getProperty("player.cache.dir")),
+            Long.getLong("player.cache.disk", 256L << 20));
+
     /**
      * Plays the input file using Java MIDI API and displays
      * header information to the standard output stream.
      * 
+     * A file whose text was played before, from any path, is read once but not parsed again, see ABCCache,
+     * and a .score file compiled by --batch is played straight from its notes, see playScore()
+     * 
      * (Your code should not exit the application abnormally using
      * System.exit().)
      * 
      * @param file the name of input abc file
      */
     public static void play(String file) {
-       BufferedReader reader = null;
+       File input = new File(file);
+       if (file.endsWith(".score")) {
+    	   playScore(input);
+    	   return;
+       }
+       byte[] bytes;
        try {
-    	   reader = new BufferedReader( new FileReader (file) );
-       } catch (FileNotFoundException e1) {
+    	   bytes = Files.readAllBytes(input.toPath());
+       } catch (IOException e1) {
     	   e1.printStackTrace();
+    	   return;
        }
-       String         line = null;
-       StringBuilder  stringBuilder = new StringBuilder();
+       String key = ABCCache.hash(bytes);
+       ABCMusic cached = CACHE.get(key);
+       if (cached != null) {
+    	   cached.DisplayInfo();
+    	   cached.PlayMusic();
+    	   return;
+       }
+		// Play the piece while it is decoded and parsed so the first notes sound at once
+		ABCPipeline pipeline = new ABCPipeline(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+		try {
+			pipeline.getPiece().DisplayInfo();
+			pipeline.play();
+			// Only a piece parsed to the end is complete enough to keep
+			CACHE.put(key, bytes.length, pipeline.getPiece());
+		} catch (MidiUnavailableException e) {
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+    }
 
+    /**
+     * Plays a score saved by ScoreFile, mapped from the file without lexing or parsing, and
+     * displays its header information
+     * 
+     * @param file a .score file
+     */
+    public static void playScore(File file) {
         try {
-        	while( ( line = reader.readLine() ) != null ) {
-		        	stringBuilder.append( line );
-		        	stringBuilder.append( "\n" );
-		    	}
-       	} catch (IOException e) {
-		e.printStackTrace();
-		}
+            NoteStore store = ScoreFile.read(file);
+            store.getPiece().DisplayInfo();
+            SequencePlayer player = new SequencePlayer(store.getPiece().getQuartersPerMinute(), store.getTicksPerQuarter());
+            new ABCRenderer(store).render(store, player);
+            player.play();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (MidiUnavailableException e) {
+            e.printStackTrace();
+        } catch (InvalidMidiDataException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Plays a single tune of a songbook, found through the index of the book so none of the
+     * tunes before it are parsed, see Songbook
+     * 
+     * @param args the arguments after --tune: the songbook, then the X: number of the tune
+     */
+    public static void playTune(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: --tune songbook number");
+            return;
+        }
+        Songbook songbook;
         try {
-			reader.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-        String input = stringBuilder.toString();
-		ABCLexer lexer = new ABCLexer(input);
-		ABCParser parser = new ABCParser(lexer);
-		ABCMusic music = parser.parse();
-		music.DisplayInfo();
-		music.PlayMusic();
+            songbook = Songbook.open(new File(args[0]));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        int index;
+        try {
+            index = songbook.indexOf(Integer.parseInt(args[1]));
+        } catch (NumberFormatException e) {
+            index = -1;
+        }
+        if (index < 0) {
+            System.err.println("No tune " + args[1] + " in " + args[0]);
+            return;
+        }
+        ABCMusic music = CACHE.parse(songbook.getText(index));
+        music.DisplayInfo();
+        music.PlayMusic();
+    }
+
+    /**
+     * Converts every .abc file under a directory in parallel and prints a report of each
+     * along with the throughput of the whole batch
+     * 
+     * @param args the arguments after --batch: the directory, then validate, stats, header, or
+     * midi or score followed by the directory in which to write the MIDI or score files
+     */
+    public static void batch(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: --batch directory [validate | stats | header | midi outputDirectory | score outputDirectory]");
+            return;
+        }
+        ABCBatch.Output output = ABCBatch.Output.VALIDATE;
+        File outputDirectory = null;
+        if (args.length > 1) {
+            try {
+                output = ABCBatch.Output.valueOf(args[1].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown batch output: " + args[1]);
+                return;
+            }
+        }
+        if (output == ABCBatch.Output.MIDI || output == ABCBatch.Output.SCORE) {
+            if (args.length < 3) {
+                System.err.println(output + " output needs an output directory");
+                return;
+            }
+            outputDirectory = new File(args[2]);
+        }
+        ABCBatch.print(new ABCBatch(new File(args[0]), output, outputDirectory).run(), System.out);
+    }
+
+    /**
+     * Finds the tunes of a library matching the words and filters given, keeping the index of the
+     * library beside it as <library>.index so only the files changed since the last search are
+     * parsed again, see TuneIndex
+     * 
+     * @param args the arguments after --search: the library directory, then any of key=Em,
+     * meter=3/4, tempo=80-120, voices=1-2 and notes=48-84, and words of the Title or Composer
+     */
+    public static void search(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: --search directory [key=K] [meter=N/D] [tempo=min-max] [voices=min-max] [notes=min-max] [words...]");
+            return;
+        }
+        TuneIndex.Query query = new TuneIndex.Query();
+        try {
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                String value = arg.substring(arg.indexOf('=') + 1);
+                if (arg.startsWith("key=")) {
+                    query.key(value);
+                } else if (arg.startsWith("meter=")) {
+                    String[] meter = value.split("/");
+                    query.meter(Integer.parseInt(meter[0]), Integer.parseInt(meter[1]));
+                } else if (arg.startsWith("tempo=")) {
+                    query.tempo(lower(value), upper(value));
+                } else if (arg.startsWith("voices=")) {
+                    query.voices(lower(value), upper(value));
+                } else if (arg.startsWith("notes=")) {
+                    query.notes(lower(value), upper(value));
+                } else {
+                    query.text(arg);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Bad search: " + e.getMessage());
+            return;
+        }
+        File library = new File(args[0]);
+        File saved = new File(library.getPath() + ".index");
+        TuneIndex index = new TuneIndex();
+        if (saved.isFile()) {
+            try {
+                index = TuneIndex.load(saved);
+            } catch (IOException e) {
+                // A damaged index is rebuilt from the library
+                e.printStackTrace();
+            }
+        }
+        if (index.update(library) > 0) {
+            try {
+                index.save(saved);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        long start = System.nanoTime();
+        int[] found = index.search(query);
+        long elapsed = System.nanoTime() - start;
+        for (int row : found) {
+            System.out.println(index.getPath(row) + "|T:" + index.getTitle(row) + "|C:" + index.getComposer(row)
+                    + "|K:" + index.getKey(row) + "|M:" + index.getMeterNumerator(row) + "/"
+                    + index.getMeterDenominator(row) + "|Q:" + index.getTempo(row) + "|V:" + index.getVoiceCount(row));
+        }
+        System.out.printf("%d of %d tunes found in %.3f ms%n", found.length, index.size(), elapsed / 1e6);
+    }
+
+    // The ends of a range written as min-max, or a single value
+    private static int lower(String range) {
+        return Integer.parseInt(range.split("-", 2)[0]);
+    }
+
+    private static int upper(String range) {
+        String[] ends = range.split("-", 2);
+        return Integer.parseInt(ends[ends.length - 1]);
     }
 
     /**
      * Plays a selected ABC file, if no file is selected plays the file at "./sample_abc/fur_elise.abc"
+     * 
+     * With --batch as the first argument converts a whole directory instead, see batch(),
+     * with --tune plays one tune of a songbook, see playTune(), and with --search finds
+     * tunes in a library, see search()
      */
     public static void main(String[] args) {
         
+        if(args.length > 0 && args[0].equals("--batch")){
+            batch(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if(args.length > 0 && args[0].equals("--tune")){
+            playTune(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if(args.length > 0 && args[0].equals("--search")){
+            search(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
     	String wholeURL = "";
     	for(int i = 0; i < args.length;i++){
     		wholeURL = wholeURL + " " + args[i];
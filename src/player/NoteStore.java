@@ -0,0 +1,300 @@
+package player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import player.ABC_ADT.Bars;
+import player.ABC_ADT.Meters;
+import player.Tokens.NoteToken;
+
+/**
+ * A compact, read-only form of the Voices of a Piece, every note is a row across parallel
+ * primitive arrays rather than a NoteToken object, Meters, Bars and Voices are ranges of rows
+ *
+ * The elements of a Chord or Tuplet are the rows straight after it, so the next element of a
+ * Meter is found at row + 1 + getChildCount(row), a Meter holds the rows from its start up to
+ * the start of the next Meter, a Bar the Meters up to the next Bar and a Voice the Bars up to
+ * the next Voice
+ *
+ * A note takes 9 bytes across the columns, against the hundred or so of a NoteToken and its lists
+ *
+ * Note: built by ABCParser.parseToStore(), which never keeps the parsed Bars in its Voices
+ */
+public final class NoteStore {
+    // Stored for accidentals that force a natural, kept as Integer.MIN_VALUE by NoteTokens
+    private static final byte NATURAL = Byte.MIN_VALUE;
+    // The octaves a note may be written above or below its letter, as far as the midi notes reach from middle C
+    static final int MAX_OCTAVES = 5;
+    private static final Tokens.Type[] TYPES = Tokens.Type.values();
+
+    // The header of the Piece, its Voices are left empty
+    private final ABCMusic piece;
+    private final String[] voiceNames;
+    // Columns, one entry per row
+    private final byte[] types;
+    private final byte[] notes;
+    private final byte[] octaves;
+    private final byte[] accidentals;
+    private final short[] numerators;
+    private final short[] denominators;
+    private final byte[] childCounts;
+    // Boundaries, each with a final entry marking the end of the last range
+    private final int[] meterStarts;
+    private final int[] barStarts;
+    private final int[] voiceStarts;
+    // The ticks in a quarter note at which every stored note is exact
+    private final int ticksPerQuarter;
+
+    private NoteStore(ABCMusic piece, String[] voiceNames, Columns columns, int[] barStarts, int[] voiceStarts) {
+        this(piece, voiceNames, Arrays.copyOf(columns.types, columns.rows), Arrays.copyOf(columns.notes, columns.rows),
+                Arrays.copyOf(columns.octaves, columns.rows), Arrays.copyOf(columns.accidentals, columns.rows),
+                Arrays.copyOf(columns.numerators, columns.rows), Arrays.copyOf(columns.denominators, columns.rows),
+                Arrays.copyOf(columns.childCounts, columns.rows), columns.getMeterBoundaries(), barStarts, voiceStarts);
+    }
+
+    /**
+     * A store over columns already built, as read back by ScoreFile, the arrays are kept rather than copied
+     */
+    NoteStore(ABCMusic piece, String[] voiceNames, byte[] types, byte[] notes, byte[] octaves, byte[] accidentals,
+            short[] numerators, short[] denominators, byte[] childCounts, int[] meterStarts, int[] barStarts, int[] voiceStarts) {
+        this.piece = piece;
+        this.voiceNames = voiceNames;
+        this.types = types;
+        this.notes = notes;
+        this.octaves = octaves;
+        this.accidentals = accidentals;
+        this.numerators = numerators;
+        this.denominators = denominators;
+        this.childCounts = childCounts;
+        this.meterStarts = meterStarts;
+        this.barStarts = barStarts;
+        this.voiceStarts = voiceStarts;
+        TickScale scale = new TickScale(piece.getNoteLength());
+        for (int row = 0; row < types.length; row++) {
+            // A Chord is as long as its notes, which are all scaled in their own rows
+            if (types[row] != Tokens.Type.CHORD.ordinal()) {
+                scale.add(numerators[row], denominators[row]);
+            }
+        }
+        this.ticksPerQuarter = scale.getTicksPerQuarter();
+    }
+
+    /**
+     * @return The ABCMusic holding the header of the Piece, with Voices that hold no Bars
+     */
+    public ABCMusic getPiece() {return piece;}
+
+    public int getVoiceCount() {return voiceNames.length;}
+    public String getVoiceName(int voice) {return voiceNames[voice];}
+    public int getRowCount() {return types.length;}
+    /**
+     * @return The ticks in a quarter note at which every stored note lasts a whole number of ticks,
+     *         as ABCMusic.getTicksPerQuarter() gives for the same Voices
+     */
+    public int getTicksPerQuarter() {return ticksPerQuarter;}
+
+    // Ranges of Bars in a Voice, Meters in a Bar and rows in a Meter, each start inclusive, end exclusive
+    public int getBarStart(int voice) {return voiceStarts[voice];}
+    public int getBarEnd(int voice) {return voiceStarts[voice + 1];}
+    public int getMeterStart(int bar) {return barStarts[bar];}
+    public int getMeterEnd(int bar) {return barStarts[bar + 1];}
+    public int getRowStart(int meter) {return meterStarts[meter];}
+    public int getRowEnd(int meter) {return meterStarts[meter + 1];}
+
+    // The fields of the NoteToken stored at a row
+    public Tokens.Type getType(int row) {return TYPES[types[row]];}
+    public char getNote(int row) {return (char) notes[row];}
+    public int getOctave(int row) {return octaves[row];}
+    public int getAccidental(int row) {return accidentals[row] == NATURAL ? Integer.MIN_VALUE : accidentals[row];}
+    public int getNumerator(int row) {return numerators[row];}
+    public int getDenominator(int row) {return denominators[row];}
+    /**
+     * @return The number of elements of the Chord or Tuplet at row, stored in the rows after it, 0 for anything else
+     */
+    public int getChildCount(int row) {return childCounts[row];}
+
+    /**
+     * @return The bytes held by the columns and boundaries, without the header
+     */
+    public long getColumnBytes() {
+        return types.length * 9L + (meterStarts.length + barStarts.length + voiceStarts.length) * 4L;
+    }
+
+    /**
+     * Collects the Bars committed by an ABCParser into a column for each Voice, which build()
+     * then joins one after the other
+     */
+    static final class Builder {
+        private final List<Columns> voices = new ArrayList<Columns>();
+
+        /**
+         * Appends the Meters of a Bar to the end of a Voice, the Bar is read at once and may be changed afterwards
+         */
+        void addBar(int voice, Bars bar) {
+            while (voices.size() <= voice) {
+                voices.add(new Columns());
+            }
+            Columns columns = voices.get(voice);
+            columns.startBar();
+            for (Iterator<Meters> i = bar.MetersList.iterator(); i.hasNext();) {
+                columns.startMeter();
+                for (Iterator<NoteToken> j = i.next().NotesList.iterator(); j.hasNext();) {
+                    columns.add(j.next());
+                }
+            }
+        }
+
+        /**
+         * @param piece, the parsed header whose Voices the Bars were added to
+         */
+        NoteStore build(ABCMusic piece) {
+            int voiceCount = piece.VoicesList.size();
+            while (voices.size() < voiceCount) {
+                voices.add(new Columns());
+            }
+            String[] names = new String[voiceCount];
+            Columns all = new Columns();
+            int[] voiceStarts = new int[voiceCount + 1];
+            List<Integer> barStarts = new ArrayList<Integer>();
+            for (int v = 0; v < voiceCount; v++) {
+                names[v] = piece.VoicesList.get(v).getName();
+                voiceStarts[v] = barStarts.size();
+                Columns voice = voices.get(v);
+                for (int bar = 0; bar < voice.bars; bar++) {
+                    barStarts.add(all.meters + voice.barStarts[bar]);
+                }
+                all.append(voice);
+                // Let each Voice go as soon as it is copied
+                voices.set(v, null);
+            }
+            voiceStarts[voiceCount] = barStarts.size();
+            int[] bars = new int[barStarts.size() + 1];
+            for (int i = 0; i < barStarts.size(); i++) {
+                bars[i] = barStarts.get(i);
+            }
+            bars[barStarts.size()] = all.meters;
+            return new NoteStore(piece, names, all, bars, voiceStarts);
+        }
+    }
+
+    /**
+     * Growable columns for the rows of one Voice
+     */
+    private static final class Columns {
+        byte[] types = new byte[64];
+        byte[] notes = new byte[64];
+        byte[] octaves = new byte[64];
+        byte[] accidentals = new byte[64];
+        short[] numerators = new short[64];
+        short[] denominators = new short[64];
+        byte[] childCounts = new byte[64];
+        int rows;
+        int[] meterStarts = new int[16];
+        int meters;
+        int[] barStarts = new int[16];
+        int bars;
+
+        void startBar() {
+            if (bars == barStarts.length) {
+                barStarts = Arrays.copyOf(barStarts, bars * 2);
+            }
+            barStarts[bars++] = meters;
+        }
+
+        // The start of every Meter and a final entry marking the end of the last
+        int[] getMeterBoundaries() {
+            int[] boundaries = Arrays.copyOf(meterStarts, meters + 1);
+            boundaries[meters] = rows;
+            return boundaries;
+        }
+
+        void startMeter() {
+            if (meters == meterStarts.length) {
+                meterStarts = Arrays.copyOf(meterStarts, meters * 2);
+            }
+            meterStarts[meters++] = rows;
+        }
+
+        // Adds a NoteToken as a row, followed by the rows of its elements
+        void add(NoteToken token) {
+            boolean compound = token.getType() == Tokens.Type.CHORD || token.getType() == Tokens.Type.TUPLET;
+            NoteToken[] children = compound ? token.getElts() : null;
+            if (compound && children.length > Byte.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many notes to store in one " + token.getType());
+            }
+            // The accidental of a Chord or Tuplet only counts its elements, so it is not kept
+            int row = addRow(token.getType(), token.getNote(), token.getOctave(),
+                    compound ? 0 : toByte(token.getAccidental()), token.getLength());
+            if (compound) {
+                childCounts[row] = (byte) children.length;
+                for (NoteToken child : children) {
+                    add(child);
+                }
+            }
+        }
+
+        private int addRow(Tokens.Type type, char note, int octave, byte accidental, int[] length) {
+            if (rows == types.length) {
+                int size = rows * 2;
+                types = Arrays.copyOf(types, size);
+                notes = Arrays.copyOf(notes, size);
+                octaves = Arrays.copyOf(octaves, size);
+                accidentals = Arrays.copyOf(accidentals, size);
+                numerators = Arrays.copyOf(numerators, size);
+                denominators = Arrays.copyOf(denominators, size);
+                childCounts = Arrays.copyOf(childCounts, size);
+            }
+            if (octave < -MAX_OCTAVES || octave > MAX_OCTAVES
+                    || length[0] > Short.MAX_VALUE || length[1] > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Note too far out of range to store: " + note);
+            }
+            int row = rows++;
+            types[row] = (byte) type.ordinal();
+            notes[row] = (byte) note;
+            octaves[row] = (byte) octave;
+            accidentals[row] = accidental;
+            numerators[row] = (short) length[0];
+            denominators[row] = (short) length[1];
+            childCounts[row] = 0;
+            return row;
+        }
+
+        private static byte toByte(int accidental) {
+            if (accidental == Integer.MIN_VALUE) {
+                return NATURAL;
+            }
+            if (accidental <= Byte.MIN_VALUE || accidental > Byte.MAX_VALUE) {
+                throw new IllegalArgumentException("Accidental too far out of range to store: " + accidental);
+            }
+            return (byte) accidental;
+        }
+
+        // Copies every row and boundary of another Voice onto the end of this one
+        void append(Columns other) {
+            for (int meter = 0; meter < other.meters; meter++) {
+                startMeter();
+                meterStarts[meters - 1] = rows + other.meterStarts[meter];
+            }
+            int size = rows + other.rows;
+            if (size > types.length) {
+                types = Arrays.copyOf(types, size);
+                notes = Arrays.copyOf(notes, size);
+                octaves = Arrays.copyOf(octaves, size);
+                accidentals = Arrays.copyOf(accidentals, size);
+                numerators = Arrays.copyOf(numerators, size);
+                denominators = Arrays.copyOf(denominators, size);
+                childCounts = Arrays.copyOf(childCounts, size);
+            }
+            System.arraycopy(other.types, 0, types, rows, other.rows);
+            System.arraycopy(other.notes, 0, notes, rows, other.rows);
+            System.arraycopy(other.octaves, 0, octaves, rows, other.rows);
+            System.arraycopy(other.accidentals, 0, accidentals, rows, other.rows);
+            System.arraycopy(other.numerators, 0, numerators, rows, other.rows);
+            System.arraycopy(other.denominators, 0, denominators, rows, other.rows);
+            System.arraycopy(other.childCounts, 0, childCounts, rows, other.rows);
+            rows = size;
+        }
+    }
+}
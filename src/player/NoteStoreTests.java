@@ -0,0 +1,81 @@
+package player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileReader;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import player.ABC_ADT.Bars;
+import player.TestMusic.RecordingSink;
+
+/**
+ * Tests that a NoteStore holds the same music as the Voices of a parse, in far less memory
+ */
+public class NoteStoreTests {
+
+    // Checks that the store renders and is shaped exactly as the Voices of a normal parse
+    private static void assertSameMusic(ABCMusic music, NoteStore store) {
+        assertEquals(music.VoicesList.size(), store.getVoiceCount());
+        for (int voice = 0; voice < store.getVoiceCount(); voice++) {
+            assertEquals(music.VoicesList.get(voice).getName(), store.getVoiceName(voice));
+            assertEquals(music.VoicesList.get(voice).BarsList.size(), store.getBarEnd(voice) - store.getBarStart(voice));
+            int bar = store.getBarStart(voice);
+            for (Bars each : music.VoicesList.get(voice).BarsList) {
+                assertEquals(each.MetersList.size(), store.getMeterEnd(bar) - store.getMeterStart(bar));
+                bar++;
+            }
+        }
+        assertEquals(TestMusic.render(music), TestMusic.render(store));
+    }
+
+    @Test
+    //Every sample piece should render the same from a NoteStore as from its Voices
+    public void samplesTest() throws IOException {
+        String[] files = {"fur_elise", "harryp", "invention", "little_night_music", "paddy", "piece1", "piece2",
+                "prelude", "scale", "smoothcriminal", "user1", "user2", "user3", "user4", "waltzing"};
+        for (String file : files) {
+            ABCMusic music = new ABCParser(new ABCLexer(new FileReader("./sample_abc/" + file + ".abc"))).parse();
+            NoteStore store = new ABCParser(new ABCLexer(new FileReader("./sample_abc/" + file + ".abc"))).parseToStore();
+            assertSameMusic(music, store);
+            // The Voices of the store's header are never filled
+            assertEquals(0, store.getPiece().VoicesList.get(0).BarsList.size());
+        }
+    }
+
+    @Test
+    //Chords, tuplets, accidentals and repeats in many Voices should all survive the store
+    public void generatedTest() {
+        for (int seed = 0; seed < 20; seed++) {
+            String piece = new ABCGenerator(seed).setBars(40).setVoices(1 + seed % 4)
+                    .setChordDensity(0.3).setTupletDensity(0.2).setAccidentalDensity(0.4).generate();
+            assertSameMusic(new ABCParser(new ABCLexer(piece)).parse(), new ABCParser(new ABCLexer(piece)).parseToStore());
+        }
+    }
+
+    @Test
+    //A renderer given its own ticks per quarter should render a store at that resolution, as it would the Voices
+    public void ticksPerQuarterTest() {
+        String piece = new ABCGenerator(4).setBars(20).setVoices(2).setTupletDensity(0.3).generate();
+        ABCMusic music = new ABCParser(new ABCLexer(piece)).parse();
+        NoteStore store = new ABCParser(new ABCLexer(piece)).parseToStore();
+        for (int ticksPerQuarter : new int[] {100, music.getTicksPerQuarter() * 2}) {
+            RecordingSink expected = new RecordingSink();
+            new ABCRenderer(music, ticksPerQuarter).render(expected);
+            RecordingSink actual = new RecordingSink();
+            new ABCRenderer(store.getPiece(), ticksPerQuarter).render(store, actual);
+            assertEquals(expected.notes.toString(), actual.notes.toString());
+        }
+        assertTrue(music.getTicksPerQuarter() % 100 != 0);
+    }
+
+    @Test
+    //A large piece should take under 16 bytes a note
+    public void compactTest() {
+        NoteStore store = new ABCParser(new ABCLexer(new ABCGenerator(9).setBars(4000).setVoices(2).generate())).parseToStore();
+        assertTrue(store.getRowCount() > 40000);
+        assertTrue(store.getColumnBytes() < 16L * store.getRowCount());
+    }
+}
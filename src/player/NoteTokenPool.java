@@ -0,0 +1,116 @@
+package player;
+
+import player.Tokens.NoteToken;
+
+/**
+ * Hands out shared NoteTokens for Notes and Rests, NoteTokens are immutable so a piece that plays
+ * the same note at the same length a thousand times needs only one of them
+ *
+ * Each token is keyed by its type, basenote, octave, accidental and length packed into a long,
+ * held in an open addressed table so finding a token already made allocates nothing, tokens too
+ * far out of range to pack are made fresh each time
+ *
+ * Note: not thread safe, every ABCLexer keeps its own pool and shares it with the Lexers it makes
+ * for the insides of Chords and Tuplets
+ */
+public final class NoteTokenPool {
+    // Set in every key so that 0 marks an empty slot
+    private static final long USED = 1L << 63;
+    private static final long REST = 1L << 62;
+    // The table is doubled once it is half full
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Tokens outer = new Tokens();
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private NoteToken[] tokens = new NoteToken[INITIAL_CAPACITY];
+    private int size;
+    private long hits;
+    private long misses;
+
+    /**
+     * @return A NoteToken for a Note, equal to new NoteToken(note, octave, accidental, numerator, denominator)
+     */
+    public NoteToken note(char note, int octave, int accidental, int numerator, int denominator) {
+        if (note > 0xFF || octave < Byte.MIN_VALUE || octave > Byte.MAX_VALUE
+                || (accidental != Integer.MIN_VALUE && (accidental <= Byte.MIN_VALUE || accidental > Byte.MAX_VALUE))
+                || !fits(numerator) || !fits(denominator)) {
+            misses++;
+            return outer.new NoteToken(note, octave, accidental, numerator, denominator);
+        }
+        // Integer.MIN_VALUE, no accidental, packs as Byte.MIN_VALUE
+        int packedAccidental = accidental == Integer.MIN_VALUE ? Byte.MIN_VALUE : accidental;
+        long key = USED | (long) note << 48 | (long) (octave & 0xFF) << 40 | (long) (packedAccidental & 0xFF) << 32
+                | (long) numerator << 16 | denominator;
+        int slot = find(key);
+        if (keys[slot] == key) {
+            hits++;
+            return tokens[slot];
+        }
+        misses++;
+        return insert(slot, key, outer.new NoteToken(note, octave, accidental, numerator, denominator));
+    }
+
+    /**
+     * @return A NoteToken for a Rest, equal to new NoteToken(numerator, denominator)
+     */
+    public NoteToken rest(int numerator, int denominator) {
+        if (!fits(numerator) || !fits(denominator)) {
+            misses++;
+            return outer.new NoteToken(numerator, denominator);
+        }
+        long key = USED | REST | (long) numerator << 16 | denominator;
+        int slot = find(key);
+        if (keys[slot] == key) {
+            hits++;
+            return tokens[slot];
+        }
+        misses++;
+        return insert(slot, key, outer.new NoteToken(numerator, denominator));
+    }
+
+    /**
+     * @return The number of requests answered with a token already in the pool
+     */
+    public long getHits() {return hits;}
+    /**
+     * @return The number of requests that had to make a new token
+     */
+    public long getMisses() {return misses;}
+    /**
+     * @return The number of distinct tokens held
+     */
+    public int size() {return size;}
+
+    private static boolean fits(int length) {
+        return length >= 0 && length <= 0xFFFF;
+    }
+
+    // The slot holding the key, or the empty slot where it belongs
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private NoteToken insert(int slot, long key, NoteToken token) {
+        keys[slot] = key;
+        tokens[slot] = token;
+        if (++size * 2 > keys.length) {
+            long[] oldKeys = keys;
+            NoteToken[] oldTokens = tokens;
+            keys = new long[oldKeys.length * 2];
+            tokens = new NoteToken[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int newSlot = find(oldKeys[i]);
+                    keys[newSlot] = oldKeys[i];
+                    tokens[newSlot] = oldTokens[i];
+                }
+            }
+        }
+        return token;
+    }
+}
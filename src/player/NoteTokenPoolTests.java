@@ -0,0 +1,80 @@
+package player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileReader;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import player.Tokens.NoteToken;
+
+/**
+ * Tests that a NoteTokenPool hands back one token for each distinct Note or Rest, equal to a new one
+ */
+public class NoteTokenPoolTests {
+
+    @Test
+    //The same note asked for twice should be the same token, any difference should be a different token
+    public void sharingTest() {
+        NoteTokenPool pool = new NoteTokenPool();
+        NoteToken note = pool.note('g', 1, -1, 3, 4);
+        assertSame(note, pool.note('g', 1, -1, 3, 4));
+        assertNotSame(note, pool.note('g', 1, -1, 3, 2));
+        assertNotSame(note, pool.note('g', -1, -1, 3, 4));
+        assertNotSame(note, pool.note('a', 1, -1, 3, 4));
+        // No accidental and a natural are different tokens
+        assertNotSame(pool.note('c', 0, Integer.MIN_VALUE, 1, 1), pool.note('c', 0, 0, 1, 1));
+        assertSame(pool.rest(1, 2), pool.rest(1, 2));
+        assertNotSame(pool.rest(1, 2), pool.rest(2, 1));
+        assertEquals(3, pool.getHits());
+        assertEquals(8, pool.getMisses());
+        assertEquals(8, pool.size());
+    }
+
+    @Test
+    //Pooled tokens should hold exactly what they were asked for, even out of the range that is pooled
+    public void valuesTest() {
+        NoteTokenPool pool = new NoteTokenPool();
+        Tokens tokens = new Tokens();
+        NoteToken[] expected = {tokens.new NoteToken('C', -3, Integer.MIN_VALUE, 1, 1),
+                tokens.new NoteToken('b', 2, 2, 7, 16), tokens.new NoteToken('e', 0, -2, 100000, 3),
+                tokens.new NoteToken(3, 8)};
+        NoteToken[] pooled = {pool.note('C', -3, Integer.MIN_VALUE, 1, 1), pool.note('b', 2, 2, 7, 16),
+                pool.note('e', 0, -2, 100000, 3), pool.rest(3, 8)};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].getType(), pooled[i].getType());
+            assertEquals(expected[i].toString(), pooled[i].toString());
+            assertEquals(expected[i].getAccidental(), pooled[i].getAccidental());
+        }
+        // The long note cannot be pooled, so it is made again
+        assertNotSame(pooled[2], pool.note('e', 0, -2, 100000, 3));
+    }
+
+    @Test
+    //A pool should survive growing well past its first table
+    public void growTest() {
+        NoteTokenPool pool = new NoteTokenPool();
+        NoteToken[] first = new NoteToken[7 * 16];
+        for (int i = 0; i < first.length; i++) {
+            first[i] = pool.note((char) ('a' + i % 7), 0, Integer.MIN_VALUE, 1 + i / 7, 8);
+        }
+        for (int i = 0; i < first.length; i++) {
+            assertSame(first[i], pool.note((char) ('a' + i % 7), 0, Integer.MIN_VALUE, 1 + i / 7, 8));
+        }
+        assertEquals(first.length, pool.size());
+    }
+
+    @Test
+    //Lexing a real piece should find most of its notes already in the pool
+    public void lexerTest() throws IOException {
+        ABCLexer lexer = new ABCLexer(new FileReader("./sample_abc/fur_elise.abc"));
+        new ABCParser(lexer).parse();
+        NoteTokenPool pool = lexer.getTokenPool();
+        assertTrue(pool.getHits() > pool.getMisses());
+        assertEquals(pool.size(), pool.getMisses());
+    }
+}
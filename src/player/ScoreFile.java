@@ -0,0 +1,292 @@
+package player;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import player.ABC_ADT.Voice;
+import player.Tokens.NoteToken;
+
+/**
+ * Saves a NoteStore as a versioned binary file and loads it back by mapping the file into memory,
+ * each column read in one bulk copy, so a score compiled once opens without lexing, parsing or
+ * making an object for any note
+ *
+ * A file holds, big endian:
+ *   the magic number "ABCS" and the version,
+ *   the header: ID, Title and Composer as strings, the Tempo, the default note Length and the
+ *   Meter as numerator and denominator, and the Key as its note, octave, accidental and length,
+ *   the number of Voices and the name of each,
+ *   the number of rows, Meters and Bars,
+ *   the byte columns of the rows: types, notes, octaves, accidentals, child counts,
+ *   the short columns: numerators, denominators,
+ *   the boundaries of the Meters, Bars and Voices as ints, each with its final entry
+ * where a string is an int length in bytes, -1 for none, then its UTF-8 bytes
+ *
+ * Note: a file is checked as it is read, a damaged one fails with an IOException rather than
+ * giving a store that cannot be rendered
+ */
+public final class ScoreFile {
+    // "ABCS"
+    private static final int MAGIC = 0x41424353;
+    private static final int VERSION = 1;
+    private static final Tokens.Type[] TYPES = Tokens.Type.values();
+    private static final int NOTE = Tokens.Type.NOTE.ordinal();
+
+    private ScoreFile() {}
+
+    /**
+     * Writes the store through a temporary file beside the target, moved into place once complete,
+     * so a reader never maps half of a score
+     *
+     * @param store, the store to save
+     * @param file, where the store is written, replacing anything there
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(NoteStore store, File file) throws IOException {
+        File temporary = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temporary))) {
+                write(store, out);
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // Left behind only if the write or the move failed
+            temporary.delete();
+        }
+    }
+
+    /**
+     * @param store, the store to save
+     * @param stream, where the store is written, left open
+     * @throws IOException if the stream cannot be written
+     */
+    public static void write(NoteStore store, OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        ABCMusic piece = store.getPiece();
+        writeString(out, piece.getID());
+        writeString(out, piece.getTitle());
+        writeString(out, piece.getName());
+        out.writeInt(piece.getTempo());
+        out.writeInt(piece.getNoteLength()[0]);
+        out.writeInt(piece.getNoteLength()[1]);
+        out.writeInt(piece.getMeterSum()[0]);
+        out.writeInt(piece.getMeterSum()[1]);
+        NoteToken key = piece.getKey();
+        out.writeChar(key.getNote());
+        out.writeInt(key.getOctave());
+        out.writeInt(key.getAccidental());
+        out.writeInt(key.getLength()[0]);
+        out.writeInt(key.getLength()[1]);
+        int voices = store.getVoiceCount();
+        out.writeInt(voices);
+        for (int v = 0; v < voices; v++) {
+            writeString(out, store.getVoiceName(v));
+        }
+        int rows = store.getRowCount();
+        int bars = voices == 0 ? 0 : store.getBarEnd(voices - 1);
+        int meters = bars == 0 ? 0 : store.getMeterEnd(bars - 1);
+        out.writeInt(rows);
+        out.writeInt(meters);
+        out.writeInt(bars);
+        for (int row = 0; row < rows; row++) {
+            out.writeByte(store.getType(row).ordinal());
+        }
+        for (int row = 0; row < rows; row++) {
+            out.writeByte(store.getNote(row));
+        }
+        for (int row = 0; row < rows; row++) {
+            out.writeByte(store.getOctave(row));
+        }
+        for (int row = 0; row < rows; row++) {
+            int accidental = store.getAccidental(row);
+            // A natural is kept as Byte.MIN_VALUE, as in the store
+            out.writeByte(accidental == Integer.MIN_VALUE ? Byte.MIN_VALUE : accidental);
+        }
+        for (int row = 0; row < rows; row++) {
+            out.writeByte(store.getChildCount(row));
+        }
+        for (int row = 0; row < rows; row++) {
+            out.writeShort(store.getNumerator(row));
+        }
+        for (int row = 0; row < rows; row++) {
+            out.writeShort(store.getDenominator(row));
+        }
+        for (int meter = 0; meter <= meters; meter++) {
+            out.writeInt(meter < meters ? store.getRowStart(meter) : rows);
+        }
+        for (int bar = 0; bar <= bars; bar++) {
+            out.writeInt(bar < bars ? store.getMeterStart(bar) : meters);
+        }
+        for (int v = 0; v <= voices; v++) {
+            out.writeInt(v < voices ? store.getBarStart(v) : bars);
+        }
+        out.flush();
+    }
+
+    /**
+     * Maps a saved store into memory and reads it
+     *
+     * @param file, a file written by write()
+     * @return The store saved in the file
+     * @throws IOException if the file cannot be read or is not a valid score
+     */
+    public static NoteStore read(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * @param buffer, the bytes of a saved store from its position on, read up to the end of the store
+     * @return The store saved in the buffer
+     * @throws IOException if the bytes are not a valid score
+     */
+    public static NoteStore read(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a score file");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Cannot read version " + version + " of the score format");
+            }
+            String id = readString(buffer);
+            String title = readString(buffer);
+            String name = readString(buffer);
+            int tempo = buffer.getInt();
+            int[] noteLength = {buffer.getInt(), buffer.getInt()};
+            int[] meterSum = {buffer.getInt(), buffer.getInt()};
+            char keyNote = buffer.getChar();
+            if (keyNote < 'A' || keyNote > 'G') {
+                throw new IOException("Bad note of the Key: " + keyNote);
+            }
+            int keyOctave = buffer.getInt();
+            int keyAccidental = buffer.getInt();
+            NoteToken key = new Tokens().new NoteToken(keyNote, keyOctave, keyAccidental, buffer.getInt(), buffer.getInt());
+            int voices = readCount(buffer, 1);
+            String[] voiceNames = new String[voices];
+            List<Voice> voiceList = new ArrayList<Voice>(voices);
+            for (int v = 0; v < voices; v++) {
+                voiceNames[v] = readString(buffer);
+                voiceList.add(new Voice(voiceNames[v]));
+            }
+            int rows = readCount(buffer, 9);
+            int meters = readCount(buffer, 4);
+            int bars = readCount(buffer, 4);
+            byte[] types = readBytes(buffer, rows);
+            byte[] notes = readBytes(buffer, rows);
+            byte[] octaves = readBytes(buffer, rows);
+            byte[] accidentals = readBytes(buffer, rows);
+            byte[] childCounts = readBytes(buffer, rows);
+            short[] numerators = readShorts(buffer, rows);
+            short[] denominators = readShorts(buffer, rows);
+            int[] meterStarts = readBoundaries(buffer, meters, rows);
+            int[] barStarts = readBoundaries(buffer, bars, meters);
+            int[] voiceStarts = readBoundaries(buffer, voices, bars);
+            for (int row = 0; row < rows; row++) {
+                if (types[row] < 0 || types[row] >= TYPES.length) {
+                    throw new IOException("Unknown type of row " + row + ": " + types[row]);
+                }
+                if (childCounts[row] < 0 || childCounts[row] >= rows - row) {
+                    throw new IOException("Row " + row + " has more elements than rows after it");
+                }
+                if (types[row] == NOTE && !isNoteLetter((char) notes[row])) {
+                    throw new IOException("Row " + row + " is not a note A-G: " + (char) notes[row]);
+                }
+                if (octaves[row] < -NoteStore.MAX_OCTAVES || octaves[row] > NoteStore.MAX_OCTAVES) {
+                    throw new IOException("Row " + row + " is out of the range of octaves: " + octaves[row]);
+                }
+            }
+            ABCMusic piece = new ABCMusic(voiceList, name, key, noteLength, meterSum, tempo, title, id);
+            return new NoteStore(piece, voiceNames, types, notes, octaves, accidentals,
+                    numerators, denominators, childCounts, meterStarts, barStarts, voiceStarts);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("The score file ends early", e);
+        }
+    }
+
+    // A note is written upper case below middle C and lower case above
+    private static boolean isNoteLetter(char note) {
+        return ('A' <= note && note <= 'G') || ('a' <= note && note <= 'g');
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        if (text == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Bad string length in score file: " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Reads a count of entries, each taking at least the given bytes still to come
+    private static int readCount(ByteBuffer buffer, int bytesEach) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * bytesEach > buffer.remaining()) {
+            throw new IOException("Bad count in score file: " + count);
+        }
+        return count;
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer, int count) {
+        byte[] column = new byte[count];
+        buffer.get(column);
+        return column;
+    }
+
+    private static short[] readShorts(ByteBuffer buffer, int count) {
+        short[] column = new short[count];
+        buffer.asShortBuffer().get(column);
+        buffer.position(buffer.position() + count * 2);
+        return column;
+    }
+
+    // Reads the starts of count ranges and the end of the last, each within 0..end and in order
+    private static int[] readBoundaries(ByteBuffer buffer, int count, int end) throws IOException {
+        int[] boundaries = new int[count + 1];
+        buffer.asIntBuffer().get(boundaries);
+        buffer.position(buffer.position() + boundaries.length * 4);
+        if (boundaries[count] != end) {
+            throw new IOException("Ranges in score file do not end at " + end);
+        }
+        for (int i = 0; i <= count; i++) {
+            if (boundaries[i] < (i == 0 ? 0 : boundaries[i - 1]) || boundaries[i] > end) {
+                throw new IOException("Ranges in score file out of order at " + i);
+            }
+        }
+        return boundaries;
+    }
+}
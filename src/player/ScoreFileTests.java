@@ -0,0 +1,184 @@
+package player;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static player.TestMusic.render;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that a NoteStore saved as a ScoreFile loads back as the same music, and that damaged
+ * files are refused
+ */
+public class ScoreFileTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Checks that the loaded store has the header, shape and notes of the saved one
+    private static void assertSameStore(NoteStore expected, NoteStore actual) {
+        ABCMusic saved = expected.getPiece(), loaded = actual.getPiece();
+        assertEquals(saved.getID(), loaded.getID());
+        assertEquals(saved.getTitle(), loaded.getTitle());
+        assertEquals(saved.getName(), loaded.getName());
+        assertEquals(saved.getTempo(), loaded.getTempo());
+        assertArrayEquals(saved.getNoteLength(), loaded.getNoteLength());
+        assertArrayEquals(saved.getMeterSum(), loaded.getMeterSum());
+        assertArrayEquals(saved.getKeySignature(), loaded.getKeySignature());
+        assertEquals(expected.getVoiceCount(), actual.getVoiceCount());
+        assertEquals(expected.getVoiceCount(), loaded.VoicesList.size());
+        for (int v = 0; v < expected.getVoiceCount(); v++) {
+            assertEquals(expected.getVoiceName(v), actual.getVoiceName(v));
+            assertEquals(expected.getBarStart(v), actual.getBarStart(v));
+            assertEquals(expected.getBarEnd(v), actual.getBarEnd(v));
+        }
+        assertEquals(expected.getRowCount(), actual.getRowCount());
+        assertEquals(expected.getColumnBytes(), actual.getColumnBytes());
+        assertEquals(expected.getTicksPerQuarter(), actual.getTicksPerQuarter());
+        assertEquals(render(expected), render(actual));
+    }
+
+    private static byte[] save(NoteStore store) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ScoreFile.write(store, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    //Every sample piece should load from its file as the store it was saved from
+    public void samplesTest() throws IOException {
+        String[] files = {"fur_elise", "harryp", "invention", "little_night_music", "paddy", "piece1", "piece2",
+                "prelude", "scale", "smoothcriminal", "user1", "user2", "user3", "user4", "waltzing"};
+        for (String file : files) {
+            NoteStore store = new ABCParser(new ABCLexer(new FileReader("./sample_abc/" + file + ".abc"))).parseToStore();
+            File score = folder.newFile(file + ".score");
+            ScoreFile.write(store, score);
+            assertSameStore(store, ScoreFile.read(score));
+        }
+    }
+
+    @Test
+    //A score written over another should replace it whole, leaving nothing else beside it
+    public void replaceTest() throws IOException {
+        File directory = folder.newFolder();
+        File score = new File(directory, "tune.score");
+        ScoreFile.write(new ABCParser(new ABCLexer(new FileReader("./sample_abc/invention.abc"))).parseToStore(), score);
+        NoteStore store = new ABCParser(new ABCLexer(new FileReader("./sample_abc/paddy.abc"))).parseToStore();
+        ScoreFile.write(store, score);
+        assertArrayEquals(new String[] {"tune.score"}, directory.list());
+        assertSameStore(store, ScoreFile.read(score));
+    }
+
+    @Test
+    //Chords, tuplets, naturals and many Voices should all survive a save
+    public void generatedTest() throws IOException {
+        for (int seed = 0; seed < 10; seed++) {
+            String piece = new ABCGenerator(seed).setBars(40).setVoices(1 + seed % 4).setRepeatDensity(0.2)
+                    .setChordDensity(0.3).setTupletDensity(0.2).setAccidentalDensity(0.4).generate();
+            NoteStore store = new ABCParser(new ABCLexer(piece)).parseToStore();
+            assertSameStore(store, ScoreFile.read(ByteBuffer.wrap(save(store))));
+        }
+    }
+
+    @Test
+    //A file cut short, of another version or not a score at all should be refused with an IOException
+    public void damagedTest() throws IOException {
+        byte[] bytes = save(new ABCParser(new ABCLexer(new FileReader("./sample_abc/invention.abc"))).parseToStore());
+        for (int length : new int[] {0, 6, 40, bytes.length / 2, bytes.length - 1}) {
+            assertRefused(Arrays.copyOf(bytes, length));
+        }
+        byte[] version = bytes.clone();
+        version[7] = 2;
+        assertRefused(version);
+        File text = folder.newFile("text.score");
+        try (Writer out = new FileWriter(text)) {
+            out.write("X:1\nT:not a score\nK:C\nC|]\n");
+        }
+        try {
+            ScoreFile.read(text);
+            fail("Read a text file as a score");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Not a score"));
+        }
+    }
+
+    @Test
+    //A score whose note letters or octaves are damaged should be refused rather than fail when rendered
+    public void damagedNotesTest() throws IOException {
+        byte[] bytes = save(parseToStore("X:1\nT:t\nK:C\nC D E F|]\n"));
+        int note = differingByte(bytes, save(parseToStore("X:1\nT:t\nK:C\nC D G F|]\n")));
+        int octave = differingByte(bytes, save(parseToStore("X:1\nT:t\nK:C\nC D E, F|]\n")));
+        int key = differingByte(bytes, save(parseToStore("X:1\nT:t\nK:D\nC D E F|]\n")));
+        for (byte letter : new byte[] {'H', 'z', 'r', 0}) {
+            assertRefused(damage(bytes, note, letter));
+            assertRefused(damage(bytes, key, letter));
+        }
+        for (int shift : new int[] {NoteStore.MAX_OCTAVES + 1, -NoteStore.MAX_OCTAVES - 1, Byte.MIN_VALUE}) {
+            assertRefused(damage(bytes, octave, (byte) shift));
+        }
+        // The bytes themselves still load once put back in range
+        ScoreFile.read(ByteBuffer.wrap(damage(bytes, note, (byte) 'g')));
+        ScoreFile.read(ByteBuffer.wrap(damage(bytes, octave, (byte) NoteStore.MAX_OCTAVES)));
+    }
+
+    private static NoteStore parseToStore(String tune) {
+        return new ABCParser(new ABCLexer(new StringReader(tune))).parseToStore();
+    }
+
+    // The index of the one byte at which two scores of the same shape differ
+    private static int differingByte(byte[] bytes, byte[] other) {
+        assertEquals(bytes.length, other.length);
+        int index = -1;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != other[i]) {
+                assertEquals(-1, index);
+                index = i;
+            }
+        }
+        assertTrue(index >= 0);
+        return index;
+    }
+
+    private static byte[] damage(byte[] bytes, int index, byte value) {
+        byte[] damaged = bytes.clone();
+        damaged[index] = value;
+        return damaged;
+    }
+
+    private static void assertRefused(byte[] bytes) {
+        try {
+            ScoreFile.read(ByteBuffer.wrap(bytes));
+            fail("Read a damaged score of " + bytes.length + " bytes");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    //A batch should compile a score for every file that loads as the file's own store
+    public void batchTest() throws IOException {
+        File input = folder.newFolder("input");
+        String piece = new ABCGenerator(2).setBars(16).setVoices(2).generate();
+        try (Writer out = new FileWriter(new File(input, "tune.abc"))) {
+            out.write(piece);
+        }
+        File output = folder.newFolder("output");
+        ABCBatch.Summary summary = new ABCBatch(input, ABCBatch.Output.SCORE, output, 1).run();
+        assertEquals(0, summary.getFailures());
+        assertSameStore(new ABCParser(new ABCLexer(piece)).parseToStore(), ScoreFile.read(new File(output, "tune.score")));
+    }
+}
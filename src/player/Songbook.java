@@ -0,0 +1,328 @@
+package player;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A file of many tunes, each starting at a line beginning X:, indexed by the byte range of every
+ * tune along with its number, Title and Composer, so any one tune is parsed on its own without
+ * reading those before it
+ *
+ * The book is mapped into memory and scanned once, looking only at the starts of lines, and only
+ * reading the header lines of each tune for its Title and Composer; the index is saved beside the
+ * book and reused for as long as the book keeps the same length and modification time
+ *
+ * Anything before the first X: line, such as the notes at the top of a collection, belongs to no tune
+ *
+ * Note: a book is read as UTF-8, whatever the default charset of the platform, so a tune has the
+ * same Title and text on every machine; a book in another encoding is decoded wrongly
+ */
+public final class Songbook {
+    // "ABCI"
+    private static final int MAGIC = 0x41424349;
+    private static final int VERSION = 1;
+    private static final String INDEX_SUFFIX = ".index";
+
+    private final File file;
+    private final MappedByteBuffer book;
+    // One entry per tune, in the order of the book
+    private final int[] numbers;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final String[] titles;
+    private final String[] composers;
+    // Each tune number in the high 32 bits and its index in the low, sorted to search by number
+    private final long[] byNumber;
+
+    private Songbook(File file, MappedByteBuffer book, int[] numbers, long[] offsets, int[] lengths,
+            String[] titles, String[] composers) {
+        this.file = file;
+        this.book = book;
+        this.numbers = numbers;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.titles = titles;
+        this.composers = composers;
+        this.byNumber = new long[numbers.length];
+        for (int i = 0; i < numbers.length; i++) {
+            byNumber[i] = (long) numbers[i] << 32 | i;
+        }
+        Arrays.sort(byNumber);
+    }
+
+    /**
+     * Opens a songbook with its index kept beside it as <book>.index, scanning the book and saving
+     * the index when there is none or the book has changed since it was saved
+     *
+     * @param file, the songbook
+     * @return The indexed songbook
+     * @throws IOException if the book cannot be read
+     */
+    public static Songbook open(File file) throws IOException {
+        return open(file, new File(file.getPath() + INDEX_SUFFIX));
+    }
+
+    /**
+     * @param file, the songbook
+     * @param index, where the index of the book is kept, or null to scan the book and keep nothing
+     * @return The indexed songbook
+     * @throws IOException if the book cannot be read
+     */
+    public static Songbook open(File file, File index) throws IOException {
+        MappedByteBuffer book = map(file);
+        if (index != null && index.isFile()) {
+            Songbook loaded = load(file, book, index);
+            if (loaded != null) {
+                return loaded;
+            }
+        }
+        Songbook scanned = scan(file, book);
+        if (index != null) {
+            scanned.save(index);
+        }
+        return scanned;
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Songbook too large to map: " + file);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Finds every tune of the book by the X: lines, reading the header lines of each
+    private static Songbook scan(File file, MappedByteBuffer book) {
+        int size = book.limit();
+        int count = 0;
+        int[] numbers = new int[64];
+        long[] offsets = new long[64];
+        String[] titles = new String[64];
+        String[] composers = new String[64];
+        // Whether the lines being passed are the header of the last tune found
+        boolean inHeader = false;
+        for (int line = 0; line < size; line = nextLine(book, line)) {
+            if (startsField(book, line, 'X')) {
+                if (count == numbers.length) {
+                    numbers = Arrays.copyOf(numbers, count * 2);
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                    titles = Arrays.copyOf(titles, count * 2);
+                    composers = Arrays.copyOf(composers, count * 2);
+                }
+                numbers[count] = parseNumber(fieldValue(book, line));
+                offsets[count] = line;
+                count++;
+                inHeader = true;
+            } else if (inHeader) {
+                if (titles[count - 1] == null && startsField(book, line, 'T')) {
+                    titles[count - 1] = fieldValue(book, line);
+                } else if (composers[count - 1] == null && startsField(book, line, 'C')) {
+                    composers[count - 1] = fieldValue(book, line);
+                } else if (startsField(book, line, 'K')) {
+                    // The Key ends the header, the music after it is only searched for the next X:
+                    inHeader = false;
+                }
+            }
+        }
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            lengths[i] = (int) ((i + 1 < count ? offsets[i + 1] : size) - offsets[i]);
+        }
+        return new Songbook(file, book, Arrays.copyOf(numbers, count), Arrays.copyOf(offsets, count), lengths,
+                Arrays.copyOf(titles, count), Arrays.copyOf(composers, count));
+    }
+
+    // The start of the line after the one starting at position, or the end of the book
+    private static int nextLine(ByteBuffer book, int position) {
+        int size = book.limit();
+        while (position < size && book.get(position) != '\n') {
+            position++;
+        }
+        return position + 1;
+    }
+
+    private static boolean startsField(ByteBuffer book, int line, char field) {
+        return line + 1 < book.limit() && book.get(line) == field && book.get(line + 1) == ':';
+    }
+
+    // The text of the field on the line starting at position, trimmed
+    private static String fieldValue(ByteBuffer book, int line) {
+        int end = nextLine(book, line) - 1;
+        byte[] bytes = new byte[Math.min(end, book.limit()) - line - 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = book.get(line + 2 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8).trim();
+    }
+
+    // The number of a tune, -1 when its X: holds none
+    private static int parseNumber(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return The number of tunes in the book
+     */
+    public int size() {return numbers.length;}
+    /**
+     * @return The number given by the X: field of the tune at index, -1 if it has none
+     */
+    public int getNumber(int index) {return numbers[index];}
+    /**
+     * @return The first Title of the tune at index, null if its header has none
+     */
+    public String getTitle(int index) {return titles[index];}
+    /**
+     * @return The first Composer of the tune at index, null if its header has none
+     */
+    public String getComposer(int index) {return composers[index];}
+    /**
+     * @return The byte at which the tune at index starts in the book
+     */
+    public long getOffset(int index) {return offsets[index];}
+    /**
+     * @return The bytes of the tune at index, up to the start of the next tune or the end of the book
+     */
+    public int getLength(int index) {return lengths[index];}
+
+    /**
+     * @param number, the number of a tune as given by its X: field
+     * @return The index of the first tune of the book with that number, -1 if there is none
+     */
+    public int indexOf(int number) {
+        int found = Arrays.binarySearch(byNumber, (long) number << 32);
+        // No key has an index of 0 and a number below it, so this is where the number would start
+        int first = found >= 0 ? found : -found - 1;
+        if (first < byNumber.length && (int) (byNumber[first] >> 32) == number) {
+            return (int) byNumber[first];
+        }
+        return -1;
+    }
+
+    /**
+     * @param index, the index of a tune in the book
+     * @return The ABC text of the tune
+     */
+    public String getText(int index) {
+        byte[] bytes = new byte[lengths[index]];
+        ByteBuffer tune = book.duplicate();
+        tune.position((int) offsets[index]);
+        tune.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lexes and parses a single tune of the book, the others are never read
+     *
+     * @param index, the index of a tune in the book
+     * @return The parsed tune
+     */
+    public ABCMusic parse(int index) {
+        return new ABCParser(new ABCLexer(getText(index))).parse();
+    }
+
+    // Reads a saved index, null if it is damaged or was saved for another version of the book
+    private static Songbook load(File file, MappedByteBuffer book, File index) throws IOException {
+        ByteBuffer in = map(index);
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION
+                    || in.getLong() != file.length() || in.getLong() != file.lastModified()) {
+                return null;
+            }
+            int count = in.getInt();
+            if (count < 0 || count > in.remaining()) {
+                return null;
+            }
+            int[] numbers = new int[count];
+            long[] offsets = new long[count];
+            int[] lengths = new int[count];
+            String[] titles = new String[count];
+            String[] composers = new String[count];
+            for (int i = 0; i < count; i++) {
+                numbers[i] = in.getInt();
+                offsets[i] = in.getLong();
+                lengths[i] = in.getInt();
+                titles[i] = readString(in);
+                composers[i] = readString(in);
+                if (offsets[i] < 0 || lengths[i] < 0 || offsets[i] + lengths[i] > book.limit()) {
+                    return null;
+                }
+            }
+            return new Songbook(file, book, numbers, offsets, lengths, titles, composers);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Saves the index through a temporary file so a reader never sees half of it
+    private void save(File index) {
+        try {
+            File temporary = File.createTempFile(index.getName(), ".tmp", index.getAbsoluteFile().getParentFile());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(file.length());
+                out.writeLong(file.lastModified());
+                out.writeInt(numbers.length);
+                for (int i = 0; i < numbers.length; i++) {
+                    out.writeInt(numbers[i]);
+                    out.writeLong(offsets[i]);
+                    out.writeInt(lengths[i]);
+                    writeString(out, titles[i]);
+                    writeString(out, composers[i]);
+                }
+            } catch (IOException e) {
+                temporary.delete();
+                throw e;
+            }
+            Files.move(temporary.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The book is still indexed in memory, it is only scanned again next time
+            e.printStackTrace();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        if (text == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Bad string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
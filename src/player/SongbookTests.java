@@ -0,0 +1,130 @@
+package player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static player.TestMusic.render;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that a Songbook finds every tune of a book, parses any one of them alone and keeps
+ * its index only for as long as the book is unchanged
+ */
+public class SongbookTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // A tune numbered and titled after its seed, with a Composer on the even ones
+    private static String tune(int seed) {
+        return TestMusic.tune(new ABCGenerator(seed).setBars(6).setVoices(1 + seed % 2).generate(),
+                "X:" + seed + "\nT:Tune " + seed + "\n" + (seed % 2 == 0 ? "C:Composer " + seed + "\n" : ""));
+    }
+
+    private File writeBook(int tunes) throws IOException {
+        File book = folder.newFile();
+        try (Writer out = new FileWriter(book)) {
+            out.write("% A collection of generated tunes\nT:not a tune\n\n");
+            for (int seed = 1; seed <= tunes; seed++) {
+                out.write(tune(seed));
+                out.write("\n\n");
+            }
+        }
+        return book;
+    }
+
+    @Test
+    //Every tune should be found with its number, Title and Composer, and parse as it would alone
+    public void scanTest() throws IOException {
+        Songbook songbook = Songbook.open(writeBook(30), null);
+        assertEquals(30, songbook.size());
+        for (int i = 0; i < songbook.size(); i++) {
+            int seed = i + 1;
+            assertEquals(seed, songbook.getNumber(i));
+            assertEquals("Tune " + seed, songbook.getTitle(i));
+            if (seed % 2 == 0) {
+                assertEquals("Composer " + seed, songbook.getComposer(i));
+            } else {
+                assertNull(songbook.getComposer(i));
+            }
+            assertTrue(songbook.getText(i).startsWith("X:" + seed + "\n"));
+            assertEquals(render(new ABCParser(new ABCLexer(tune(seed))).parse()), render(songbook.parse(i)));
+        }
+        assertEquals(songbook.getOffset(1), songbook.getOffset(0) + songbook.getLength(0));
+    }
+
+    @Test
+    //A tune should be found by its number, however far into the book
+    public void indexOfTest() throws IOException {
+        Songbook songbook = Songbook.open(writeBook(2000), null);
+        assertEquals(2000, songbook.size());
+        int index = songbook.indexOf(1999);
+        assertEquals(1998, index);
+        assertEquals("Tune 1999", songbook.parse(index).getTitle());
+        assertEquals(0, songbook.indexOf(1));
+        assertEquals(-1, songbook.indexOf(0));
+        assertEquals(-1, songbook.indexOf(2001));
+    }
+
+    @Test
+    //The saved index should be used until the book changes, then the book scanned again
+    public void savedIndexTest() throws IOException {
+        File book = writeBook(10);
+        File index = new File(book.getPath() + ".index");
+        Songbook scanned = Songbook.open(book);
+        assertTrue(index.isFile());
+        Songbook loaded = Songbook.open(book);
+        assertEquals(scanned.size(), loaded.size());
+        for (int i = 0; i < scanned.size(); i++) {
+            assertEquals(scanned.getNumber(i), loaded.getNumber(i));
+            assertEquals(scanned.getTitle(i), loaded.getTitle(i));
+            assertEquals(scanned.getComposer(i), loaded.getComposer(i));
+            assertEquals(scanned.getOffset(i), loaded.getOffset(i));
+            assertEquals(scanned.getLength(i), loaded.getLength(i));
+        }
+        try (Writer out = new FileWriter(book, true)) {
+            out.write(tune(11));
+        }
+        assertEquals(11, Songbook.open(book).size());
+        // A damaged index is scanned past and replaced
+        try (Writer out = new FileWriter(index)) {
+            out.write("damaged");
+        }
+        assertEquals(11, Songbook.open(book).size());
+        assertEquals(11, Songbook.open(book).indexOf(11) + 1);
+    }
+
+    @Test
+    //A book should be read as UTF-8, so a Title and text beyond ASCII come back whole
+    public void utf8Test() throws IOException {
+        File book = folder.newFile();
+        String tune = TestMusic.tune(new ABCGenerator(3).setBars(4).generate(), "X:7\nT:Caf\u00e9 na \u00d3ige\nC:Se\u00e1n \u00d3 Riada\n");
+        Files.write(book.toPath(), ("% Songs \u2014 collected\n" + tune).getBytes(StandardCharsets.UTF_8));
+        Songbook songbook = Songbook.open(book, null);
+        assertEquals(1, songbook.size());
+        assertEquals("Caf\u00e9 na \u00d3ige", songbook.getTitle(0));
+        assertEquals("Se\u00e1n \u00d3 Riada", songbook.getComposer(0));
+        assertEquals(tune, songbook.getText(0));
+    }
+
+    @Test
+    //A book without any X: line should hold no tunes
+    public void emptyTest() throws IOException {
+        File book = folder.newFile();
+        try (Writer out = new FileWriter(book)) {
+            out.write("% nothing here\n");
+        }
+        assertEquals(0, Songbook.open(book, null).size());
+        assertEquals(-1, Songbook.open(book, null).indexOf(1));
+    }
+}
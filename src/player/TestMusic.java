@@ -0,0 +1,54 @@
+package player;
+
+import sound.NoteSink;
+
+/**
+ * The sinks and generated tunes shared by the tests of the player
+ */
+final class TestMusic {
+
+    private TestMusic() {
+    }
+
+    /**
+     * Records every note as text, in the order it is added
+     */
+    static final class RecordingSink implements NoteSink {
+        final StringBuilder notes = new StringBuilder();
+
+        @Override
+        public void addNote(int note, int startTick, int numTicks) {
+            notes.append(note).append('@').append(startTick).append('+').append(numTicks).append('\n');
+        }
+    }
+
+    /**
+     * @param music, a parsed Piece
+     * @return Every note of the Piece as rendered at its own ticks per quarter, one per line
+     */
+    static String render(ABCMusic music) {
+        RecordingSink sink = new RecordingSink();
+        new ABCRenderer(music).render(sink);
+        return sink.notes.toString();
+    }
+
+    /**
+     * @param store, a Piece parsed to a NoteStore
+     * @return Every note of the store as rendered at its own ticks per quarter, one per line
+     */
+    static String render(NoteStore store) {
+        RecordingSink sink = new RecordingSink();
+        new ABCRenderer(store).render(store, sink);
+        return sink.notes.toString();
+    }
+
+    /**
+     * @param generated, a tune made by an ABCGenerator
+     * @param fields, the X:, T: and any other header fields to put before its own M:, L:, Q: and K:
+     * @return The generated tune numbered and titled by the fields given in place of its own
+     */
+    static String tune(String generated, String fields) {
+        String rest = generated.substring(generated.indexOf("C:ABCGenerator\n") + "C:ABCGenerator\n".length());
+        return fields + rest;
+    }
+}
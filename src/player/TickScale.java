@@ -0,0 +1,76 @@
+package player;
+
+/**
+ * Finds the fewest ticks per quarter note at which every note of a Piece lasts a whole number of
+ * ticks, so that rendering uses only integer arithmetic and long pieces never drift
+ *
+ * A note numerator/denominator of the default length L lasts numerator*L[0]*4/(denominator*L[1])
+ * quarters, so the scale is the lowest common multiple of the reduced denominators of these,
+ * starting from the scale at which a default length note lasts 16 ticks
+ *
+ * Note: a MIDI file holds at most 0x7FFF ticks per quarter, a note that would need more keeps
+ * the scale reached so far and has its ticks rounded down
+ */
+final class TickScale {
+    static final int MAX_TICKS_PER_QUARTER = 0x7FFF;
+
+    private final int[] noteLength;
+    private int ticksPerQuarter;
+
+    /**
+     * @param noteLength, the default note length L of the Piece as numerator and denominator
+     */
+    TickScale(int[] noteLength) {
+        this.noteLength = noteLength;
+        this.ticksPerQuarter = getDefaultTicksPerQuarter(noteLength);
+    }
+
+    /**
+     * @return The ticks per quarter at which a default length note lasts 16 ticks, rounded down
+     */
+    static int getDefaultTicksPerQuarter(int[] noteLength) {
+        return Math.max(1, (noteLength[1]*16)/(noteLength[0]*4));
+    }
+
+    /**
+     * Raises the scale so that a note of the given length lasts a whole number of ticks
+     */
+    void add(int numerator, int denominator) {
+        long quarterNumerator = (long) numerator * noteLength[0] * 4;
+        long quarterDenominator = (long) denominator * noteLength[1];
+        if (quarterDenominator <= 0) {
+            return;
+        }
+        long needed = quarterDenominator / gcd(quarterNumerator, quarterDenominator);
+        long scale = ticksPerQuarter / gcd(ticksPerQuarter, needed) * needed;
+        if (scale <= MAX_TICKS_PER_QUARTER) {
+            ticksPerQuarter = (int) scale;
+        }
+    }
+
+    int getTicksPerQuarter() {
+        return ticksPerQuarter;
+    }
+
+    /**
+     * @return The ticks lasted by a note numerator/denominator of the default length, rounded
+     *         down if the scale does not hold it exactly
+     * @throws IllegalArgumentException if the note is too long to count in ticks
+     */
+    static int ticks(int numerator, int denominator, int[] noteLength, int ticksPerQuarter) {
+        long ticks = (long) numerator * noteLength[0] * 4 * ticksPerQuarter / ((long) denominator * noteLength[1]);
+        if (ticks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Note too long to count in ticks: " + numerator + "/" + denominator);
+        }
+        return (int) ticks;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long next = a % b;
+            a = b;
+            b = next;
+        }
+        return a;
+    }
+}
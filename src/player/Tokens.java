@@ -1,5 +1,7 @@
 package player;
 
+import java.io.Serializable;
+
 /**
  * The Token Super Class for ABC files, contains an Enums of types so that all tokens can be compared regardless
  * of delegation due to the existence of Comments and Voices
@@ -9,7 +11,8 @@ package player;
  * @author Xearim
  *
  */
-public class Tokens {
+public class Tokens implements Serializable {
+    private static final long serialVersionUID = 1L;
     // Enum with all possible token types, visible for use by Lexer
     public enum Type {
         FIELD_NUMBER,
@@ -52,6 +55,7 @@ public class Tokens {
      *
      */
     public class NoteToken extends Tokens {
+        private static final long serialVersionUID = 1L;
         // Basenote of a note (value of r denotes a non-basenote token)
         private final char note;
         // Octave and Accidental as +/- modifiers
@@ -186,6 +190,7 @@ public class Tokens {
      *
      */
     public class ElemToken extends Tokens {
+        private static final long serialVersionUID = 1L;
         // Values of Elems
         private final String text;
         // Note token representing the key of a FIELD_KEY
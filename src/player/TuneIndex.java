@@ -0,0 +1,757 @@
+package player;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import sound.NoteSink;
+
+/**
+ * A searchable index of every .abc file under a directory, by the words of its Title and Composer
+ * and by its Key, Meter, tempo, number of Voices and the range of its notes
+ *
+ * Each file is one row of columns held in arrays; the words, Keys and Meters are inverted into
+ * sorted lists of rows which are intersected to answer a query, and the rows are also kept sorted
+ * by tempo, Voices and lowest and highest note, so a query starts from whichever of its terms or
+ * ranges holds the fewest rows and only checks those; a term held by many rows, such as a Key, is
+ * also kept as a set of bits so such terms are intersected a word of 64 rows at a time
+ *
+ * update() parses only the files whose length or modification time changed since they were last
+ * indexed, and save() and load() keep the rows in a single file between runs, the lists of rows
+ * are inverted again as they are loaded
+ *
+ * Note: an index must not be updated while another thread searches it
+ */
+public final class TuneIndex {
+    // "ABCX"
+    private static final int MAGIC = 0x41424358;
+    // 2: the Key of a sharp or flat minor tune is kept with its accidental, as F#m
+    private static final int VERSION = 2;
+    // The number of Voices kept for a file that failed to read or parse, so it is not parsed again until it changes
+    private static final int FAILED = 0;
+    private static final int[] NO_ROWS = new int[0];
+    // A term held by more than one row in this many is also kept as bits, which then take less room than its list
+    private static final int DENSE = 32;
+
+    private Rows rows = new Rows(0);
+    // Rows by term, such as t:word, c:word, w:word, k:Em or m:3/4, each list sorted
+    private Map<String, int[]> postings = new HashMap<>();
+    // The rows of each dense term as bits, row r being bit r % 64 of word r / 64
+    private Map<String, long[]> bits = new HashMap<>();
+    // Each value in the high 32 bits and its row in the low, sorted to find the rows in a range
+    private long[] byTempo = new long[0], byVoices = new long[0], byLowest = new long[0], byHighest = new long[0];
+
+    /**
+     * The columns of the indexed files, one row per file
+     */
+    static final class Rows {
+        final String[] paths;
+        final long[] lengths, modified;
+        final String[] titles, composers, keys;
+        final int[] meterNumerators, meterDenominators, tempos, voiceCounts, lowestNotes, highestNotes;
+
+        Rows(int size) {
+            paths = new String[size];
+            lengths = new long[size];
+            modified = new long[size];
+            titles = new String[size];
+            composers = new String[size];
+            keys = new String[size];
+            meterNumerators = new int[size];
+            meterDenominators = new int[size];
+            tempos = new int[size];
+            voiceCounts = new int[size];
+            lowestNotes = new int[size];
+            highestNotes = new int[size];
+        }
+
+        int size() {return paths.length;}
+
+        void copy(int row, Rows from, int fromRow) {
+            paths[row] = from.paths[fromRow];
+            lengths[row] = from.lengths[fromRow];
+            modified[row] = from.modified[fromRow];
+            titles[row] = from.titles[fromRow];
+            composers[row] = from.composers[fromRow];
+            keys[row] = from.keys[fromRow];
+            meterNumerators[row] = from.meterNumerators[fromRow];
+            meterDenominators[row] = from.meterDenominators[fromRow];
+            tempos[row] = from.tempos[fromRow];
+            voiceCounts[row] = from.voiceCounts[fromRow];
+            lowestNotes[row] = from.lowestNotes[fromRow];
+            highestNotes[row] = from.highestNotes[fromRow];
+        }
+    }
+
+    /**
+     * An empty index, filled by update() or load()
+     */
+    public TuneIndex() {
+    }
+
+    /**
+     * An index of rows filled in directly rather than read from files, such as a library larger
+     * than any on disk for a benchmark
+     *
+     * @param rows, the columns of every tune, each row with a path and, unless it failed, a Key
+     */
+    TuneIndex(Rows rows) {
+        this.rows = rows;
+        reindex();
+    }
+
+    /**
+     * Finds the lowest and highest of the notes rendered
+     */
+    static final class NoteRange implements NoteSink {
+        int lowest = Integer.MAX_VALUE, highest = Integer.MIN_VALUE;
+
+        @Override
+        public void addNote(int note, int startTick, int numTicks) {
+            lowest = Math.min(lowest, note);
+            highest = Math.max(highest, note);
+        }
+    }
+
+    /**
+     * Indexes every .abc file under root, parsing only those that are new or have changed length
+     * or modification time since they were last indexed; the files no longer under root are dropped
+     *
+     * Note: every file is read as UTF-8, so a library indexes the same words on every platform
+     *
+     * @param root, the directory searched for .abc files, or a single file
+     * @return The number of files parsed
+     */
+    public int update(File root) {
+        List<File> files = new ArrayList<>();
+        ABCBatch.findFiles(root, files);
+        Map<String, Integer> known = new HashMap<>();
+        for (int row = 0; row < rows.size(); row++) {
+            known.put(rows.paths[row], row);
+        }
+        // The row each file keeps, or -1 to parse it again
+        int[] kept = new int[files.size()];
+        List<File> changed = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            Integer row = known.get(file.getPath());
+            if (row != null && rows.lengths[row] == file.length() && rows.modified[row] == file.lastModified()) {
+                kept[i] = row;
+            } else {
+                kept[i] = -1;
+                changed.add(file);
+            }
+        }
+        Rows parsed = new Rows(changed.size());
+        if (!changed.isEmpty()) {
+            // A pool of its own, so the parsing neither waits on nor holds up other users of the common pool
+            ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            try {
+                pool.invoke(new IndexTask(changed, parsed, 0, changed.size()));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        Rows next = new Rows(files.size());
+        for (int i = 0, j = 0; i < files.size(); i++) {
+            if (kept[i] >= 0) {
+                next.copy(i, rows, kept[i]);
+            } else {
+                next.copy(i, parsed, j++);
+            }
+        }
+        rows = next;
+        reindex();
+        return changed.size();
+    }
+
+    // Inverts the terms of the rows and sorts them by each of the ranges a query can ask for
+    private void reindex() {
+        postings = invert(rows);
+        bits = new HashMap<>();
+        for (Map.Entry<String, int[]> entry : postings.entrySet()) {
+            if (entry.getValue().length > rows.size() / DENSE) {
+                long[] set = new long[(rows.size() + 63) >>> 6];
+                for (int row : entry.getValue()) {
+                    set[row >>> 6] |= 1L << row;
+                }
+                bits.put(entry.getKey(), set);
+            }
+        }
+        byTempo = order(rows.tempos);
+        byVoices = order(rows.voiceCounts);
+        byLowest = order(rows.lowestNotes);
+        byHighest = order(rows.highestNotes);
+    }
+
+    private static long[] order(int[] values) {
+        long[] order = new long[values.length];
+        for (int row = 0; row < values.length; row++) {
+            order[row] = (long) values[row] << 32 | row;
+        }
+        Arrays.sort(order);
+        return order;
+    }
+
+    // The first position of the order holding a value of at least min
+    private static int lowerBound(long[] order, int min) {
+        int found = Arrays.binarySearch(order, (long) min << 32);
+        // No key has a row of 0 and a value below it, so this is where the value would start
+        return found >= 0 ? found : -found - 1;
+    }
+
+    // The first position of the order holding a value above max
+    private static int upperBound(long[] order, int max) {
+        return max == Integer.MAX_VALUE ? order.length : lowerBound(order, max + 1);
+    }
+
+    /**
+     * Parses a range of the changed files, splitting it in half until single files remain so idle
+     * workers can steal the halves not yet started
+     */
+    private static class IndexTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<File> files;
+        private final Rows rows;
+        private final int from, to;
+
+        IndexTask(List<File> files, Rows rows, int from, int to) {
+            this.files = files;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                for (int i = from; i < to; i++) {
+                    index(files.get(i), rows, i);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new IndexTask(files, rows, from, middle), new IndexTask(files, rows, middle, to));
+            }
+        }
+    }
+
+    // Parses and renders a file into the given row, a file that fails is kept with no Voices
+    private static void index(File file, Rows rows, int row) {
+        // Taken before reading so a change made while parsing is seen by the next update
+        rows.paths[row] = file.getPath();
+        rows.lengths[row] = file.length();
+        rows.modified[row] = file.lastModified();
+        ABCMusic music;
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+            try {
+                music = new ABCParser(new ABCLexer(reader)).parse();
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | RuntimeException e) {
+            rows.voiceCounts[row] = FAILED;
+            return;
+        }
+        ABCHeader header = ABCHeader.of(music);
+        NoteRange range = new NoteRange();
+        new ABCRenderer(music).render(range);
+        rows.titles[row] = header.getTitle();
+        rows.composers[row] = header.getComposer();
+        rows.keys[row] = header.getKey();
+        rows.meterNumerators[row] = header.getMeterNumerator();
+        rows.meterDenominators[row] = header.getMeterDenominator();
+        rows.tempos[row] = header.getTempo();
+        rows.voiceCounts[row] = header.getVoiceCount();
+        rows.lowestNotes[row] = range.lowest;
+        rows.highestNotes[row] = range.highest;
+    }
+
+    // A growing list of rows, only ever added to in increasing order
+    private static class RowList {
+        int[] rows = new int[4];
+        int size;
+
+        void add(int row) {
+            // A word twice in one Title is listed once
+            if (size > 0 && rows[size - 1] == row) {
+                return;
+            }
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+    }
+
+    // Lists the rows of every term, leaving out the files that failed
+    private static Map<String, int[]> invert(Rows rows) {
+        Map<String, RowList> lists = new HashMap<>();
+        for (int row = 0; row < rows.size(); row++) {
+            if (rows.voiceCounts[row] == FAILED) {
+                continue;
+            }
+            for (String word : words(rows.titles[row])) {
+                list(lists, "t:" + word).add(row);
+                list(lists, "w:" + word).add(row);
+            }
+            for (String word : words(rows.composers[row])) {
+                list(lists, "c:" + word).add(row);
+                list(lists, "w:" + word).add(row);
+            }
+            list(lists, keyTerm(rows.keys[row])).add(row);
+            list(lists, meterTerm(rows.meterNumerators[row], rows.meterDenominators[row])).add(row);
+        }
+        Map<String, int[]> postings = new HashMap<>(lists.size() * 2);
+        for (Map.Entry<String, RowList> entry : lists.entrySet()) {
+            postings.put(entry.getKey(), Arrays.copyOf(entry.getValue().rows, entry.getValue().size));
+        }
+        return postings;
+    }
+
+    private static RowList list(Map<String, RowList> lists, String term) {
+        RowList list = lists.get(term);
+        if (list == null) {
+            list = new RowList();
+            lists.put(term, list);
+        }
+        return list;
+    }
+
+    // The words of a text in lower case, split at anything but a letter or digit
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    // The Key spelled as ABCHeader names it, the accidental of a minor Key before its mode
+    private static String keyTerm(String key) {
+        if (key.isEmpty() || "ABCDEFG".indexOf(Character.toUpperCase(key.charAt(0))) < 0) {
+            throw new IllegalArgumentException("Not a Key: " + key);
+        }
+        String rest = key.substring(1);
+        String accidental = rest.indexOf('#') >= 0 ? "#" : rest.indexOf('b') >= 0 ? "b" : "";
+        String mode = rest.indexOf('m') >= 0 ? "m" : "";
+        if (rest.length() != accidental.length() + mode.length()) {
+            throw new IllegalArgumentException("Not a Key: " + key);
+        }
+        return "k:" + Character.toUpperCase(key.charAt(0)) + accidental + mode;
+    }
+
+    private static String meterTerm(int numerator, int denominator) {
+        return "m:" + numerator + "/" + denominator;
+    }
+
+    /**
+     * What a tune must have to be found, every part left unset matches any tune
+     */
+    public static final class Query {
+        private final List<String> terms = new ArrayList<>();
+        private int minTempo = 0, maxTempo = Integer.MAX_VALUE;
+        private int minVoices = 1, maxVoices = Integer.MAX_VALUE;
+        private int lowestNote = Integer.MIN_VALUE, highestNote = Integer.MAX_VALUE;
+
+        /**
+         * @param text, words that must all appear in the Title or the Composer, in any case or order
+         */
+        public Query text(String text) {
+            return words("w:", text);
+        }
+
+        /**
+         * @param text, words that must all appear in the Title
+         */
+        public Query title(String text) {
+            return words("t:", text);
+        }
+
+        /**
+         * @param text, words that must all appear in the Composer
+         */
+        public Query composer(String text) {
+            return words("c:", text);
+        }
+
+        private Query words(String field, String text) {
+            for (String word : TuneIndex.words(text)) {
+                terms.add(field + word);
+            }
+            return this;
+        }
+
+        /**
+         * @param key, the Key, such as C, F# or Em, the accidental of a minor Key on either side
+         * of its mode, so F#m finds the tunes written K:Fm#
+         * @throws IllegalArgumentException if key is not a Key
+         */
+        public Query key(String key) {
+            terms.add(keyTerm(key));
+            return this;
+        }
+
+        public Query meter(int numerator, int denominator) {
+            terms.add(meterTerm(numerator, denominator));
+            return this;
+        }
+
+        /**
+         * @param min, the fewest beats per minute
+         * @param max, the most beats per minute
+         */
+        public Query tempo(int min, int max) {
+            checkRange(min, max);
+            minTempo = min;
+            maxTempo = max;
+            return this;
+        }
+
+        /**
+         * @param min, the fewest Voices
+         * @param max, the most Voices
+         */
+        public Query voices(int min, int max) {
+            checkRange(min, max);
+            minVoices = Math.max(1, min);
+            maxVoices = max;
+            return this;
+        }
+
+        /**
+         * @param lowest, the lowest MIDI note, as Pitch.toMidiNote() gives it, any note may be
+         * @param highest, the highest MIDI note any note may be
+         */
+        public Query notes(int lowest, int highest) {
+            checkRange(lowest, highest);
+            lowestNote = lowest;
+            highestNote = highest;
+            return this;
+        }
+
+        private static void checkRange(int min, int max) {
+            if (min > max) {
+                throw new IllegalArgumentException("Empty range: " + min + " to " + max);
+            }
+        }
+    }
+
+    /**
+     * Finds the tunes having every part of the query
+     *
+     * @param query, what the tunes must have
+     * @return The rows of the tunes found, in increasing order
+     */
+    public int[] search(Query query) {
+        List<int[]> lists = new ArrayList<>();
+        List<long[]> sets = new ArrayList<>();
+        int shortest = rows.size();
+        for (String term : query.terms) {
+            int[] list = postings.get(term);
+            if (list == null) {
+                return NO_ROWS;
+            }
+            shortest = Math.min(shortest, list.length);
+            long[] set = bits.get(term);
+            if (set == null) {
+                lists.add(list);
+            } else {
+                sets.add(set);
+            }
+        }
+        // The narrowest range, when it holds fewer rows than the shortest list of the terms
+        long[] order = byTempo;
+        int from = lowerBound(byTempo, query.minTempo), to = upperBound(byTempo, query.maxTempo);
+        int voicesFrom = lowerBound(byVoices, query.minVoices), voicesTo = upperBound(byVoices, query.maxVoices);
+        if (voicesTo - voicesFrom < to - from) {
+            order = byVoices;
+            from = voicesFrom;
+            to = voicesTo;
+        }
+        int lowestFrom = lowerBound(byLowest, query.lowestNote);
+        if (byLowest.length - lowestFrom < to - from) {
+            order = byLowest;
+            from = lowestFrom;
+            to = byLowest.length;
+        }
+        int highestTo = upperBound(byHighest, query.highestNote);
+        if (highestTo < to - from) {
+            order = byHighest;
+            from = 0;
+            to = highestTo;
+        }
+        if (to - from < shortest) {
+            int[] range = new int[to - from];
+            for (int i = from; i < to; i++) {
+                range[i - from] = (int) order[i];
+            }
+            Arrays.sort(range);
+            lists.add(range);
+        }
+        int[] candidates = null;
+        if (!lists.isEmpty()) {
+            // Intersected shortest first so each step searches the fewest rows
+            lists.sort(Comparator.comparingInt(list -> list.length));
+            candidates = lists.get(0);
+            for (int i = 1; i < lists.size() && candidates.length > 0; i++) {
+                candidates = intersect(candidates, lists.get(i));
+            }
+        } else if (!sets.isEmpty()) {
+            // Only dense terms, so their rows are found a word at a time
+            long[] both = sets.remove(sets.size() - 1).clone();
+            for (long[] set : sets) {
+                for (int i = 0; i < both.length; i++) {
+                    both[i] &= set[i];
+                }
+            }
+            sets.clear();
+            candidates = rowsOf(both);
+        }
+        int count = candidates == null ? rows.size() : candidates.length;
+        int[] found = new int[Math.min(count, 1024)];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int row = candidates == null ? i : candidates[i];
+            if (inAll(sets, row) && matches(query, row, candidates == null)) {
+                if (size == found.length) {
+                    found = Arrays.copyOf(found, Math.min(count, size * 2));
+                }
+                found[size++] = row;
+            }
+        }
+        return size == found.length ? found : Arrays.copyOf(found, size);
+    }
+
+    private static boolean inAll(List<long[]> sets, int row) {
+        for (long[] set : sets) {
+            if ((set[row >>> 6] & 1L << row) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] rowsOf(long[] set) {
+        int count = 0;
+        for (long word : set) {
+            count += Long.bitCount(word);
+        }
+        int[] rows = new int[count];
+        int size = 0;
+        for (int i = 0; i < set.length; i++) {
+            for (long word = set[i]; word != 0; word &= word - 1) {
+                rows[size++] = i << 6 | Long.numberOfTrailingZeros(word);
+            }
+        }
+        return rows;
+    }
+
+    // The rows of the shorter list also in the longer, each searched for by galloping ahead from
+    // the last one found, so lists of any sizes are intersected in time near the shorter
+    private static int[] intersect(int[] shorter, int[] longer) {
+        int[] both = new int[shorter.length];
+        int size = 0;
+        int from = 0;
+        for (int row : shorter) {
+            int step = 1;
+            while (from + step < longer.length && longer[from + step] < row) {
+                step <<= 1;
+            }
+            int found = Arrays.binarySearch(longer, from + (step >> 1), Math.min(from + step + 1, longer.length), row);
+            if (found >= 0) {
+                both[size++] = row;
+                from = found + 1;
+            } else {
+                from = -found - 1;
+            }
+            if (from == longer.length) {
+                break;
+            }
+        }
+        return Arrays.copyOf(both, size);
+    }
+
+    // Reads only the columns the query limits, as the candidates of a common term are far apart
+    // and each column read for one is another miss in the cache; every row is a candidate only
+    // when the query has no terms, and its Voices are then read to leave out the files that failed
+    private boolean matches(Query query, int row, boolean everyRow) {
+        if (everyRow || query.minVoices > 1 || query.maxVoices < Integer.MAX_VALUE) {
+            int voices = rows.voiceCounts[row];
+            if (voices < query.minVoices || voices > query.maxVoices) {
+                return false;
+            }
+        }
+        if (query.minTempo > 0 || query.maxTempo < Integer.MAX_VALUE) {
+            int tempo = rows.tempos[row];
+            if (tempo < query.minTempo || tempo > query.maxTempo) {
+                return false;
+            }
+        }
+        if (query.lowestNote > Integer.MIN_VALUE || query.highestNote < Integer.MAX_VALUE) {
+            // A tune without notes has none outside any range
+            int lowest = rows.lowestNotes[row], highest = rows.highestNotes[row];
+            return lowest > highest || lowest >= query.lowestNote && highest <= query.highestNote;
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of files indexed, including those that failed to parse
+     */
+    public int size() {return rows.size();}
+    public String getPath(int row) {return rows.paths[row];}
+    /**
+     * @return The Title of the tune at row, null if its file failed to parse
+     */
+    public String getTitle(int row) {return rows.titles[row];}
+    public String getComposer(int row) {return rows.composers[row];}
+    public String getKey(int row) {return rows.keys[row];}
+    public int getMeterNumerator(int row) {return rows.meterNumerators[row];}
+    public int getMeterDenominator(int row) {return rows.meterDenominators[row];}
+    public int getTempo(int row) {return rows.tempos[row];}
+    /**
+     * @return The number of Voices of the tune at row, 0 if its file failed to parse
+     */
+    public int getVoiceCount(int row) {return rows.voiceCounts[row];}
+    /**
+     * @return The lowest MIDI note of the tune at row, Integer.MAX_VALUE if it has no notes
+     */
+    public int getLowestNote(int row) {return rows.lowestNotes[row];}
+    /**
+     * @return The highest MIDI note of the tune at row, Integer.MIN_VALUE if it has no notes
+     */
+    public int getHighestNote(int row) {return rows.highestNotes[row];}
+
+    /**
+     * Saves the rows through a temporary file so a reader never sees half of them
+     *
+     * @param file, where the index is kept
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        File temporary = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rows.size());
+            for (int row = 0; row < rows.size(); row++) {
+                writeString(out, rows.paths[row]);
+                out.writeLong(rows.lengths[row]);
+                out.writeLong(rows.modified[row]);
+                writeString(out, rows.titles[row]);
+                writeString(out, rows.composers[row]);
+                writeString(out, rows.keys[row]);
+                out.writeInt(rows.meterNumerators[row]);
+                out.writeInt(rows.meterDenominators[row]);
+                out.writeInt(rows.tempos[row]);
+                out.writeInt(rows.voiceCounts[row]);
+                out.writeInt(rows.lowestNotes[row]);
+                out.writeInt(rows.highestNotes[row]);
+            }
+        } catch (IOException e) {
+            temporary.delete();
+            throw e;
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param file, an index written by save()
+     * @return The index, ready to search or update
+     * @throws IOException if the file cannot be read, or is damaged or not an index at all
+     */
+    public static TuneIndex load(File file) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Tune index too large to map: " + file);
+            }
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a tune index: " + file);
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported tune index version: " + version);
+            }
+            int count = in.getInt();
+            if (count < 0 || count > in.remaining()) {
+                throw new IOException("Bad row count: " + count);
+            }
+            Rows rows = new Rows(count);
+            for (int row = 0; row < count; row++) {
+                rows.paths[row] = readString(in);
+                rows.lengths[row] = in.getLong();
+                rows.modified[row] = in.getLong();
+                rows.titles[row] = readString(in);
+                rows.composers[row] = readString(in);
+                rows.keys[row] = readString(in);
+                rows.meterNumerators[row] = in.getInt();
+                rows.meterDenominators[row] = in.getInt();
+                rows.tempos[row] = in.getInt();
+                rows.voiceCounts[row] = in.getInt();
+                rows.lowestNotes[row] = in.getInt();
+                rows.highestNotes[row] = in.getInt();
+                if (rows.paths[row] == null || rows.voiceCounts[row] != FAILED && rows.keys[row] == null) {
+                    throw new IOException("Damaged row: " + row);
+                }
+            }
+            return new TuneIndex(rows);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Damaged tune index: " + file, e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        if (text == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Bad string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
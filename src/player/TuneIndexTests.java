@@ -0,0 +1,208 @@
+package player;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that a TuneIndex finds the same tunes as checking every file by hand, parses only the
+ * files that changed, and loads back as it was saved
+ */
+public class TuneIndexTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String[] KEYS = {"C", "G", "Em", "F#", "D"};
+    private static final String[] DANCES = {"Reel", "Jig", "Waltz", "Hornpipe"};
+    private static final String[] PLACES = {"Morning", "Harbour", "Hill"};
+
+    // A tune titled, composed, keyed and metered after its seed
+    private static String tune(int seed) {
+        String tune = TestMusic.tune(new ABCGenerator(seed).setBars(4).setVoices(1 + seed % 3)
+                .setKey(KEYS[seed % KEYS.length]).generate(),
+                "X:" + seed + "\nT:The " + DANCES[seed % DANCES.length] + " of the " + PLACES[seed % PLACES.length]
+                + "\nC:" + (seed % 5 == 0 ? "Traditional" : "Composer " + seed % 7) + "\n");
+        return seed % 2 == 0 ? tune.replace("M:4/4\n", "M:2/2\n") : tune;
+    }
+
+    private File writeLibrary(int tunes) throws IOException {
+        File library = folder.newFolder("library");
+        File nested = new File(library, "nested");
+        nested.mkdir();
+        for (int seed = 1; seed <= tunes; seed++) {
+            write(new File(seed % 4 == 0 ? nested : library, "tune" + seed + ".abc"), tune(seed));
+        }
+        write(new File(library, "notes.txt"), "not a tune");
+        return library;
+    }
+
+    private static void write(File file, String text) throws IOException {
+        try (Writer out = new FileWriter(file)) {
+            out.write(text);
+        }
+    }
+
+    // Keeps the rows of the index whose file, parsed by hand, passes every check
+    private static int[] expected(TuneIndex index, String word, String key, int meterNumerator, int minTempo,
+            int maxTempo, int minVoices, int maxVoices, int lowest, int highest) throws IOException {
+        List<Integer> rows = new ArrayList<>();
+        for (int row = 0; row < index.size(); row++) {
+            ABCMusic music = new ABCParser(new ABCLexer(new FileReader(index.getPath(row)))).parse();
+            ABCHeader header = ABCHeader.of(music);
+            TuneIndex.NoteRange range = new TuneIndex.NoteRange();
+            new ABCRenderer(music).render(range);
+            String text = (header.getTitle() + " " + header.getComposer()).toLowerCase();
+            if ((word == null || (" " + text + " ").contains(" " + word + " "))
+                    && (key == null || key.equals(header.getKey()))
+                    && (meterNumerator == 0 || meterNumerator == header.getMeterNumerator())
+                    && header.getTempo() >= minTempo && header.getTempo() <= maxTempo
+                    && header.getVoiceCount() >= minVoices && header.getVoiceCount() <= maxVoices
+                    && range.lowest >= lowest && range.highest <= highest) {
+                rows.add(row);
+            }
+        }
+        int[] found = new int[rows.size()];
+        for (int i = 0; i < found.length; i++) {
+            found[i] = rows.get(i);
+        }
+        return found;
+    }
+
+    @Test
+    //Every query should find just the tunes found by parsing each file and checking it
+    public void searchTest() throws IOException {
+        TuneIndex index = new TuneIndex();
+        assertEquals(40, index.update(writeLibrary(40)));
+        assertEquals(40, index.size());
+        int max = Integer.MAX_VALUE, min = Integer.MIN_VALUE;
+        assertArrayEquals(expected(index, "reel", null, 0, 0, max, 1, max, min, max),
+                index.search(new TuneIndex.Query().text("REEL")));
+        assertArrayEquals(expected(index, "traditional", null, 0, 0, max, 1, max, min, max),
+                index.search(new TuneIndex.Query().composer("traditional")));
+        assertArrayEquals(expected(index, "harbour", "Em", 0, 0, max, 1, max, min, max),
+                index.search(new TuneIndex.Query().title("the harbour").key("Em")));
+        assertArrayEquals(expected(index, null, "F#", 2, 0, max, 2, 3, min, max),
+                index.search(new TuneIndex.Query().key("F#").meter(2, 2).voices(2, 3)));
+        assertArrayEquals(expected(index, null, null, 0, 80, 140, 1, max, min, max),
+                index.search(new TuneIndex.Query().tempo(80, 140)));
+        assertArrayEquals(expected(index, "jig", null, 0, 0, max, 1, max, 55, 80),
+                index.search(new TuneIndex.Query().text("jig").notes(55, 80)));
+        assertEquals(40, index.search(new TuneIndex.Query()).length);
+        assertTrue(index.search(new TuneIndex.Query().text("reel")).length > 0);
+        assertEquals(0, index.search(new TuneIndex.Query().text("reel jig")).length);
+        assertEquals(0, index.search(new TuneIndex.Query().composer("harbour")).length);
+        assertEquals(0, index.search(new TuneIndex.Query().key("Bb")).length);
+    }
+
+    @Test
+    //Only new and changed files should be parsed again, and removed ones dropped
+    public void updateTest() throws IOException {
+        File library = writeLibrary(12);
+        TuneIndex index = new TuneIndex();
+        assertEquals(12, index.update(library));
+        assertEquals(0, index.update(library));
+        File changed = new File(library, "tune1.abc");
+        write(changed, tune(1).replace("T:The Jig", "T:The Slide"));
+        changed.setLastModified(changed.lastModified() + 2000);
+        assertEquals(1, index.update(library));
+        assertEquals(0, index.search(new TuneIndex.Query().text("jig harbour")).length);
+        int[] slide = index.search(new TuneIndex.Query().title("slide"));
+        assertEquals(1, slide.length);
+        assertEquals(changed.getPath(), index.getPath(slide[0]));
+        assertTrue(new File(library, "tune2.abc").delete());
+        assertEquals(0, index.update(library));
+        assertEquals(11, index.size());
+        // A broken file is kept, found by no query, and not parsed again until it changes
+        write(new File(library, "broken.abc"), "X:1\nT:Broken Reel\nnot a header\n");
+        assertEquals(1, index.update(library));
+        assertEquals(0, index.update(library));
+        assertEquals(12, index.size());
+        assertEquals(11, index.search(new TuneIndex.Query()).length);
+        assertEquals(0, index.search(new TuneIndex.Query().title("broken")).length);
+    }
+
+    @Test
+    //A sharp minor Key should be found however its accidental and mode are ordered, and not as the plain minor
+    public void sharpMinorTest() throws IOException {
+        File library = writeLibrary(8);
+        write(new File(library, "sharp.abc"), TestMusic.tune(new ABCGenerator(9).setBars(4).setKey("Fm#").generate(),
+                "X:9\nT:The Sharp Air\n"));
+        TuneIndex index = new TuneIndex();
+        index.update(library);
+        int[] sharp = index.search(new TuneIndex.Query().key("F#m"));
+        assertEquals(1, sharp.length);
+        assertEquals("F#m", index.getKey(sharp[0]));
+        assertArrayEquals(sharp, index.search(new TuneIndex.Query().key("Fm#")));
+        assertArrayEquals(sharp, index.search(new TuneIndex.Query().title("sharp")));
+        assertEquals(0, index.search(new TuneIndex.Query().key("Fm")).length);
+        assertEquals(0, index.search(new TuneIndex.Query().key("F#").title("sharp")).length);
+        try {
+            new TuneIndex.Query().key("H#");
+            fail("Took H# as a Key");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 10000)
+    //A file whose header never reaches its Key should be kept as broken rather than stop the update
+    public void missingKeyTest() throws IOException {
+        File library = writeLibrary(4);
+        write(new File(library, "no_key.abc"), "X:1\nT:The Keyless Reel\nC D|\n");
+        TuneIndex index = new TuneIndex();
+        assertEquals(5, index.update(library));
+        assertEquals(5, index.size());
+        assertEquals(4, index.search(new TuneIndex.Query()).length);
+        assertEquals(0, index.search(new TuneIndex.Query().title("keyless")).length);
+    }
+
+    @Test
+    //A saved index should load with the same rows and answers, and a damaged one be refused
+    public void saveTest() throws IOException {
+        File library = writeLibrary(20);
+        TuneIndex index = new TuneIndex();
+        index.update(library);
+        write(new File(library, "broken.abc"), "not a tune");
+        index.update(library);
+        File saved = folder.newFile("tunes.index");
+        index.save(saved);
+        TuneIndex loaded = TuneIndex.load(saved);
+        assertEquals(index.size(), loaded.size());
+        for (int row = 0; row < index.size(); row++) {
+            assertEquals(index.getPath(row), loaded.getPath(row));
+            assertEquals(index.getTitle(row), loaded.getTitle(row));
+            assertEquals(index.getComposer(row), loaded.getComposer(row));
+            assertEquals(index.getKey(row), loaded.getKey(row));
+            assertEquals(index.getMeterNumerator(row), loaded.getMeterNumerator(row));
+            assertEquals(index.getMeterDenominator(row), loaded.getMeterDenominator(row));
+            assertEquals(index.getTempo(row), loaded.getTempo(row));
+            assertEquals(index.getVoiceCount(row), loaded.getVoiceCount(row));
+            assertEquals(index.getLowestNote(row), loaded.getLowestNote(row));
+            assertEquals(index.getHighestNote(row), loaded.getHighestNote(row));
+        }
+        TuneIndex.Query query = new TuneIndex.Query().text("waltz").voices(1, 2);
+        assertArrayEquals(index.search(query), loaded.search(query));
+        assertEquals(0, loaded.update(library));
+        write(saved, "X:1\nT:not an index\nK:C\nC|]\n");
+        try {
+            TuneIndex.load(saved);
+            fail("Loaded a text file as an index");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Not a tune index"));
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package sound;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds a Standard MIDI File from the notes scheduled on its tracks, writing the bytes of
+ * each event straight into a buffer without any MidiEvent, ShortMessage or Track, and without
+ * a Sequencer or any other MIDI device.
+ *
+ * The file read back holds the same events as a Sequence built with a TrackWriter per track:
+ * note ons and offs at velocity 100, those of track t on channel SequencePlayer.getChannel(t)
+ * as the voices of a SequencePlayer are played, the tempo at the start of the first track,
+ * and at the same tick the events in the order NoteEvents gives them, each note's in the order
+ * the notes were added.
+ */
+public class MidiFileWriter {
+
+    private static final int DEFAULT_VELOCITY = 100; // the volume
+    private static final int SET_TEMPO = 0x51; // meta message type of a tempo change
+    private static final int END_OF_TRACK = 0x2F; // meta message type ending every track
+    private static final int MAX_TICK = 0x0FFFFFFF; // the largest delta time a file can hold
+
+    private final int ticksPerQuarterNote;
+    private final List<TrackBuffer> tracks = new ArrayList<TrackBuffer>();
+    private int beatsPerMinute;
+
+    /*
+     * Rep invariant:
+     *   ticksPerQuarterNote is in 1..0x7FFF,
+     *   beatsPerMinute is >= 0, 0 when no tempo is set
+     */
+
+    /**
+     * @param ticksPerQuarterNote the number of ticks per quarter note; must be in 1..0x7FFF
+     */
+    public MidiFileWriter(int ticksPerQuarterNote) {
+        if (ticksPerQuarterNote < 1 || ticksPerQuarterNote > 0x7FFF) {
+            throw new IllegalArgumentException("A MIDI file cannot have " + ticksPerQuarterNote
+                    + " ticks per quarter note");
+        }
+        this.ticksPerQuarterNote = ticksPerQuarterNote;
+        checkRep();
+    }
+
+    /**
+     * Sets the tempo at the start of the first track, as a Sequencer playing the file would
+     * otherwise use 120 beats per minute.
+     *
+     * @param beatsPerMinute the number of beats per minute, where each beat is equal to
+     * a quarter note in duration; must be positive
+     */
+    public void setTempo(int beatsPerMinute) {
+        if (beatsPerMinute <= 0) {
+            throw new IllegalArgumentException("Cannot set the tempo to " + beatsPerMinute);
+        }
+        this.beatsPerMinute = beatsPerMinute;
+        checkRep();
+    }
+
+    /**
+     * @return a new track at the end of the file, on which notes can be scheduled, played on
+     * channel SequencePlayer.getChannel(t) for the track t
+     */
+    public NoteSink createTrack() {
+        TrackBuffer track = new TrackBuffer(SequencePlayer.getChannel(tracks.size()));
+        tracks.add(track);
+        return track;
+    }
+
+    /**
+     * Writes the file, of type 0 for a single track and of type 1 otherwise.
+     *
+     * @param out the stream to which the file is written, left open
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(OutputStream out) throws IOException {
+        ByteBuffer file = new ByteBuffer();
+        file.writeAscii("MThd");
+        file.writeInt(6);
+        file.writeShort(tracks.size() == 1 ? 0 : 1);
+        file.writeShort(tracks.size());
+        file.writeShort(ticksPerQuarterNote);
+        ByteBuffer events = new ByteBuffer();
+        for (int t = 0; t < tracks.size(); t++) {
+            events.clear();
+            tracks.get(t).writeEvents(events, t == 0 ? beatsPerMinute : 0);
+            file.writeAscii("MTrk");
+            file.writeInt(events.size);
+            file.write(events);
+        }
+        out.write(file.bytes, 0, file.size);
+    }
+
+    /**
+     * The notes scheduled on one track, each kept as a note on and a note off event packed into
+     * a long by NoteEvents, so sorting the longs puts the events in the order they are written.
+     */
+    private static class TrackBuffer implements NoteSink {
+        private final int channel;
+        private long[] events = new long[64];
+        private byte[] notes = new byte[32];
+        private int count;
+
+        TrackBuffer(int channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void addNote(int note, int startTick, int numTicks) {
+            long end = (long) startTick + numTicks;
+            if (note < 0 || note > 127 || startTick < 0 || numTicks < 0 || end > MAX_TICK) {
+                throw new IllegalArgumentException(MessageFormat.format("Cannot add note with the pitch {0} "
+                        + "at tick {1} for duration of {2}", note, startTick, numTicks));
+            }
+            if (count == NoteEvents.MAX_NOTES - 1) {
+                throw new IllegalArgumentException("Cannot add more than " + count + " notes to a track");
+            }
+            if (count == notes.length) {
+                notes = Arrays.copyOf(notes, count * 2);
+                events = Arrays.copyOf(events, count * 4);
+            }
+            notes[count] = (byte) note;
+            events[2 * count] = NoteEvents.on(startTick, count);
+            events[2 * count + 1] = NoteEvents.off(startTick, end, count);
+            count++;
+        }
+
+        // Writes the tempo if one is given, every note event in order, then the end of the track
+        void writeEvents(ByteBuffer out, int beatsPerMinute) {
+            if (beatsPerMinute > 0) {
+                int microsPerQuarter = 60000000 / beatsPerMinute;
+                out.writeVariable(0);
+                out.write(0xFF);
+                out.write(SET_TEMPO);
+                out.write(3);
+                out.write(microsPerQuarter >> 16);
+                out.write(microsPerQuarter >> 8);
+                out.write(microsPerQuarter);
+            }
+            long[] sorted = Arrays.copyOf(events, 2 * count);
+            Arrays.sort(sorted);
+            long lastTick = 0;
+            for (long event : sorted) {
+                long tick = NoteEvents.getTick(event);
+                int status = NoteEvents.isOn(event) ? 0x90 : 0x80;
+                out.writeVariable(tick - lastTick);
+                out.write(status | channel);
+                out.write(notes[NoteEvents.getIndex(event)]);
+                out.write(DEFAULT_VELOCITY);
+                lastTick = tick;
+            }
+            out.writeVariable(0);
+            out.write(0xFF);
+            out.write(END_OF_TRACK);
+            out.write(0);
+        }
+    }
+
+    /**
+     * A growable array of bytes written in the big endian order of MIDI files.
+     */
+    private static class ByteBuffer {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        void write(int b) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) b;
+        }
+
+        void write(ByteBuffer other) {
+            if (size + other.size > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.bytes, 0, bytes, size, other.size);
+            size += other.size;
+        }
+
+        void writeAscii(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                write(text.charAt(i));
+            }
+        }
+
+        void writeInt(int value) {
+            write(value >> 24);
+            write(value >> 16);
+            write(value >> 8);
+            write(value);
+        }
+
+        void writeShort(int value) {
+            write(value >> 8);
+            write(value);
+        }
+
+        // Writes a delta time as a variable length quantity, 7 bits a byte, highest first
+        void writeVariable(long value) {
+            int shift = 21;
+            while (shift > 0 && (value >>> shift) == 0) {
+                shift -= 7;
+            }
+            for (; shift > 0; shift -= 7) {
+                write((int) (value >>> shift) & 0x7F | 0x80);
+            }
+            write((int) value & 0x7F);
+        }
+    }
+
+    private void checkRep() {
+        assert ticksPerQuarterNote >= 1 && ticksPerQuarterNote <= 0x7FFF : "ticks per quarter note should fit a MIDI file";
+        assert beatsPerMinute >= 0 : "beats per minute should not be negative";
+    }
+}
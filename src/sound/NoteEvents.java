@@ -0,0 +1,55 @@
+package sound;
+
+/**
+ * Packs the note on and note off events of numbered notes into longs that sort into the order
+ * a track adding the notes one by one would hold them in: by tick, then at the same tick the
+ * offs of notes that have sounded, then each note starting there in order, its on followed by
+ * its own off if it lasts no ticks at all, so no note is left sounding.
+ *
+ * Each event holds its tick in the high 32 bits, then 0 for the off of a note that has sounded or
+ * 1 for a note starting at the tick, then 30 bits of the index of the note, then 0 for an on or
+ * 1 for an off.
+ */
+final class NoteEvents {
+
+    /** The number of notes that can be numbered */
+    static final int MAX_NOTES = 1 << 30;
+
+    private static final long STARTING = 1L << 31;
+    private static final long OFF = 1L;
+    private static final int INDEX_MASK = MAX_NOTES - 1;
+
+    private NoteEvents() {
+    }
+
+    /**
+     * @param tick the tick at which note index starts; must be >= 0 and below 2^31
+     * @param index the index of the note; must be in 0..MAX_NOTES-1
+     * @return the note on event
+     */
+    static long on(long tick, int index) {
+        return tick << 32 | STARTING | (long) index << 1;
+    }
+
+    /**
+     * @param startTick the tick at which note index starts; must be >= 0
+     * @param endTick the tick at which note index ends; must be >= startTick and below 2^31
+     * @param index the index of the note; must be in 0..MAX_NOTES-1
+     * @return the note off event
+     */
+    static long off(long startTick, long endTick, int index) {
+        return endTick << 32 | (endTick == startTick ? STARTING : 0) | (long) index << 1 | OFF;
+    }
+
+    static boolean isOn(long event) {
+        return (event & OFF) == 0;
+    }
+
+    static long getTick(long event) {
+        return event >>> 32;
+    }
+
+    static int getIndex(long event) {
+        return (int) (event >>> 1) & INDEX_MASK;
+    }
+}
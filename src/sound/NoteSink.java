@@ -0,0 +1,17 @@
+package sound;
+
+/**
+ * Anything on which notes can be scheduled by tick, such as a SequencePlayer building a
+ * track or a StreamingPlayer sounding them as they arrive.
+ */
+public interface NoteSink {
+
+    /**
+     * Schedules the note to be played starting at startTick for the duration of numTicks.
+     * 
+     * @param note the pitch value for the note to be played; must be a valid note
+     * @param startTick the starting tick; must be >= 0
+     * @param numTicks the number of ticks for which this note should be played; must be >= 0
+     */
+    public void addNote(int note, int startTick, int numTicks);
+}
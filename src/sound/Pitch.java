@@ -41,6 +41,14 @@ public class Pitch {
         7   // G
     };
     
+    // The midi note of each of A to G in the middle octave
+    private static final int[] MIDDLE_MIDI_NOTES = new int[scale.length];
+    static {
+        for (int i = 0; i < scale.length; i++) {
+            MIDDLE_MIDI_NOTES[i] = scale[i] + 60;
+        }
+    }
+    
     private Pitch(int value, int accidental, int octave) {
         this.value = value;
         this.accidental = accidental;
@@ -96,20 +104,10 @@ public class Pitch {
      * transposing F up by 5 semitones will produce B flat.
      */
     public Pitch transpose(int semitonesUp) {
-        int newValue = value + semitonesUp;
-        int newOctave = octave;
+        int newValue = Math.floorMod(value + semitonesUp, OCTAVE);
+        int newOctave = octave + Math.floorDiv(value + semitonesUp, OCTAVE);
         int newAccidental = accidental;
 
-        while (newValue >= OCTAVE) {
-            newValue -= OCTAVE;
-            newOctave++;
-        }
-
-        while (newValue < 0) {
-            newValue += OCTAVE;
-            newOctave--;
-        }
-
         if (!isValid(newValue)) {
             int interval = semitonesUp % OCTAVE;
             if (interval == 3
@@ -127,6 +125,22 @@ public class Pitch {
         return new Pitch(newValue, newAccidental, newOctave);
     }
 
+    /**
+     * Finds the midi note of a pitch without making any Pitch, so that
+     * Pitch.midiNote(c, o, a) == new Pitch(c).octaveTranspose(o).accidentalTranspose(a).toMidiNote()
+     *
+     * @param letter a note in {'A',...,'G'}
+     * @param octave the octaves above (or below, if negative) the middle octave
+     * @param accidental the sharps (or flats, if negative) applied to the note
+     * @return the midi note of the pitch
+     */
+    public static int midiNote(char letter, int octave, int accidental) {
+        int index = letter - 'A';
+        if (index < 0 || index >= MIDDLE_MIDI_NOTES.length)
+            throw new IllegalArgumentException(letter + " must be in the range A-G");
+        return MIDDLE_MIDI_NOTES[index] + OCTAVE * octave + accidental;
+    }
+
     /**
      * @return number of semitones between this and that; i.e., n such
      * that that.transpose(n).toMidiNote() == that.toMidiNote().
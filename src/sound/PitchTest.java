@@ -0,0 +1,39 @@
+package sound;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Testing that the static midi note lookup agrees with Pitch objects
+ */
+public class PitchTest {
+
+    @Test
+    public void midiNoteMatchesPitch() {
+        for (char letter = 'A'; letter <= 'G'; letter++) {
+            for (int octave = -4; octave <= 4; octave++) {
+                for (int accidental = -2; accidental <= 2; accidental++) {
+                    Pitch pitch = new Pitch(letter).octaveTranspose(octave).accidentalTranspose(accidental);
+                    assertEquals(pitch.toMidiNote(), Pitch.midiNote(letter, octave, accidental));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void transposeAcrossOctaves() {
+        Pitch c = new Pitch('C');
+        for (int semitones = -40; semitones <= 40; semitones++) {
+            assertEquals(60 + semitones, c.transpose(semitones).toMidiNote());
+        }
+        assertEquals(new Pitch('C').octaveTranspose(3), c.transpose(3 * Pitch.OCTAVE));
+        assertEquals(new Pitch('C').octaveTranspose(-3), c.transpose(-3 * Pitch.OCTAVE));
+        assertEquals(new Pitch('A').accidentalTranspose(1).octaveTranspose(-1), c.transpose(-2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void midiNoteNeedsALetter() {
+        Pitch.midiNote('H', 0, 0);
+    }
+}
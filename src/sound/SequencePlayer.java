@@ -1,8 +1,15 @@
 package sound;
 
+import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
 
 import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaEventListener;
+import javax.sound.midi.MetaMessage;
 import javax.sound.midi.MidiEvent;
 import javax.sound.midi.MidiMessage;
 import javax.sound.midi.MidiSystem;
@@ -15,14 +22,17 @@ import javax.sound.midi.Track;
 /**
  * Schedules and plays a sequence of notes at given time steps (or "ticks").
  */
-public class SequencePlayer {
+public class SequencePlayer implements NoteSink {
 
     private Sequencer sequencer;
     private Track track;
     private int beatsPerMinute;
 
-    private static int DEFAULT_CHANNEL = 0;    // midi channel - for our purpose always 0
-    private static int DEFAULT_VELOCITY = 100; // the volume
+    private static final int DEFAULT_CHANNEL = 0;    // midi channel of the notes added one at a time, that of the first voice
+    private static final int DEFAULT_VELOCITY = 100; // the volume
+    private static final int END_OF_TRACK = 0x2F; // meta message type sent when the track is over
+    private static final int MIDI_CHANNELS = 16;
+    private static final int PERCUSSION_CHANNEL = 9; // plays drums whatever the note, so no voice is put on it
 
     /*
      * Rep invariant:
@@ -74,6 +84,7 @@ public class SequencePlayer {
      * @param startTick the starting tick; must be >= 0
      * @param numTicks the number of ticks for which this note should be played; must be >= 0
      */
+    @Override
     public void addNote(int note, int startTick, int numTicks) {
         try {
             // schedule two events in the track, one for starting a note and
@@ -88,40 +99,296 @@ public class SequencePlayer {
     }
 
     /**
-     * The sequencer is opened to begin playing its track.
+     * Schedules many notes at once, note i playing notes[i] from startTicks[i] for durations[i]
+     * ticks. The note on and off events are sorted first and then added in order of their ticks,
+     * so each is appended to the track in constant time rather than searched into place.
+     * The track holds the events just as adding the notes one by one in order of their starts
+     * would: at the same tick the offs of notes that have sounded come first, then each note
+     * starting there in the order of the arrays, a note of no ticks followed by its own off.
+     *
+     * @param notes the pitch values of the notes; each must be a valid note
+     * @param startTicks the starting ticks of the notes; each must be >= 0 and below 2^31
+     * @param durations the numbers of ticks each note is played for; each must be >= 0
+     * @throws IllegalArgumentException if the arrays differ in length, hold 2^30 notes or more,
+     * or a tick is out of range
      */
-    public void play() throws MidiUnavailableException {
-        sequencer.open();
+    public void addNotes(int[] notes, long[] startTicks, int[] durations) {
+        if (notes.length != startTicks.length || notes.length != durations.length) {
+            throw new IllegalArgumentException("Need a start and a duration for each of the "
+                    + notes.length + " notes");
+        }
+        if (notes.length >= NoteEvents.MAX_NOTES) {
+            throw new IllegalArgumentException("Cannot add " + notes.length + " notes at once");
+        }
+        // Each event is sorted by its tick, then as NoteEvents orders them
+        long[] events = new long[notes.length * 2];
+        for (int i = 0; i < notes.length; i++) {
+            long end = startTicks[i] + durations[i];
+            if (startTicks[i] < 0 || durations[i] < 0 || end > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(MessageFormat.format("Cannot add note with the pitch {0} "
+                        + "at tick {1} for duration of {2}", notes[i], startTicks[i], durations[i]));
+            }
+            events[2 * i] = NoteEvents.on(startTicks[i], i);
+            events[2 * i + 1] = NoteEvents.off(startTicks[i], end, i);
+        }
+        Arrays.sort(events);
+        try {
+            for (long event : events) {
+                int command = NoteEvents.isOn(event) ? ShortMessage.NOTE_ON : ShortMessage.NOTE_OFF;
+                addMidiEvent(command, notes[NoteEvents.getIndex(event)], (int) NoteEvents.getTick(event));
+            }
+        } catch (InvalidMidiDataException e) {
+            throw new RuntimeException("Cannot add the notes", e);
+        }
+    }
+
+    /**
+     * Schedules the notes of many voices, each rendered on its own, with voice v played on
+     * channel getChannel(v). The note on and off events of the voices are merged in order of
+     * their ticks, so each is appended to the track in constant time.
+     *
+     * @param voices the notes of each voice
+     */
+    public void addVoices(Timeline[] voices) {
+        addVoices(track, voices);
+    }
+
+    /**
+     * @param voice the index of a voice, >= 0
+     * @return the MIDI channel on which the voice is played, every channel but the percussion
+     * channel 9 in turn, so voices past the fifteenth share a channel with an earlier one
+     */
+    public static int getChannel(int voice) {
+        int channel = voice % (MIDI_CHANNELS - 1);
+        return channel < PERCUSSION_CHANNEL ? channel : channel + 1;
+    }
+
+    /**
+     * Adds the notes of many voices to any track by a k-way merge of their events: at the same
+     * tick the events of every voice are in the order addNotes() gives them, the offs of notes
+     * that have sounded first and a note of no ticks turned off after it is on, with earlier
+     * voices first where the events of two voices tie.
+     *
+     * @param track the track to which the events are added
+     * @param voices the notes of each voice, voice v written on channel getChannel(v)
+     */
+    public static void addVoices(Track track, Timeline[] voices) {
+        long[][] notes = new long[voices.length][];
+        long[][] events = new long[voices.length][];
+        for (int v = 0; v < voices.length; v++) {
+            notes[v] = voices[v].toArray();
+            // Each event is sorted by its tick, then as NoteEvents orders them
+            events[v] = new long[notes[v].length * 2];
+            for (int i = 0; i < notes[v].length; i++) {
+                long start = Timeline.getStartTick(notes[v][i]);
+                events[v][2 * i] = NoteEvents.on(start, i);
+                events[v][2 * i + 1] = NoteEvents.off(start, start + Timeline.getTicks(notes[v][i]), i);
+            }
+            Arrays.sort(events[v]);
+        }
+        // A binary heap of the voices with events left, ordered by their next event
+        int[] next = new int[voices.length];
+        int[] heap = new int[voices.length];
+        int size = 0;
+        for (int v = 0; v < voices.length; v++) {
+            if (events[v].length > 0) {
+                heap[size++] = v;
+            }
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(heap, size, i, events, next);
+        }
+        try {
+            while (size > 0) {
+                int v = heap[0];
+                long event = events[v][next[v]++];
+                int command = NoteEvents.isOn(event) ? ShortMessage.NOTE_ON : ShortMessage.NOTE_OFF;
+                int note = Timeline.getNote(notes[v][NoteEvents.getIndex(event)]);
+                addMidiEvent(track, command, getChannel(v), note, NoteEvents.getTick(event));
+                if (next[v] == events[v].length) {
+                    heap[0] = heap[--size];
+                }
+                siftDown(heap, size, 0, events, next);
+            }
+        } catch (InvalidMidiDataException e) {
+            throw new RuntimeException("Cannot add the voices", e);
+        }
+    }
+
+    // Moves the voice at heap[i] down until no voice below it has an earlier next event
+    private static void siftDown(int[] heap, int size, int i, long[][] events, int[] next) {
+        while (true) {
+            int least = i;
+            for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                if (before(heap[child], heap[least], events, next)) {
+                    least = child;
+                }
+            }
+            if (least == i) {
+                return;
+            }
+            int swap = heap[i];
+            heap[i] = heap[least];
+            heap[least] = swap;
+            i = least;
+        }
+    }
+
+    // Whether the next event of voice a comes before that of voice b
+    private static boolean before(int a, int b, long[][] events, int[] next) {
+        long eventA = events[a][next[a]];
+        long eventB = events[b][next[b]];
+        return eventA < eventB || (eventA == eventB && a < b);
+    }
+
+    private static void addMidiEvent(Track track, int eventType, int channel, int note, long tick)
+            throws InvalidMidiDataException {
+        ShortMessage msg = new ShortMessage();
+        msg.setMessage(eventType, channel, note, DEFAULT_VELOCITY);
+        track.add(new MidiEvent(msg, tick));
+    }
+
+    /**
+     * The sequencer is opened to begin playing its track, and closed again once the
+     * end of the track is reached. Returns at once, without waiting for the track.
+     * 
+     * @return a future completed when the track has finished playing; cancelling it
+     * stops the playback
+     */
+    public CompletableFuture<Void> playAsync() throws MidiUnavailableException {
+        final CompletableFuture<Void> done = new CompletableFuture<Void>();
+        final MetaEventListener endOfTrack = new MetaEventListener() {
+            @Override
+            public void meta(MetaMessage meta) {
+                if (meta.getType() == END_OF_TRACK) {
+                    // close first so the sequencer is released when play() returns
+                    release(this);
+                    done.complete(null);
+                }
+            }
+        };
+        done.whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(Void result, Throwable failure) {
+                if (done.isCancelled()) {
+                    release(endOfTrack);
+                }
+            }
+        });
+        sequencer.addMetaEventListener(endOfTrack);
+        try {
+            sequencer.open();
+        } catch (MidiUnavailableException e) {
+            sequencer.removeMetaEventListener(endOfTrack);
+            throw e;
+        }
         sequencer.setTempoInBPM(this.beatsPerMinute);
 
         // start playing!
         sequencer.start();
+        return done;
+    }
 
-        // busy-wait until the sequencer stops playing.
-        while (sequencer.isRunning()) {
-            Thread.yield();
+    /**
+     * Stops the sequencer and closes it, no longer listening for the end of the track
+     */
+    private void release(MetaEventListener endOfTrack) {
+        sequencer.removeMetaEventListener(endOfTrack);
+        sequencer.stop();
+        sequencer.close();
+    }
+
+    /**
+     * @return whether the sequencer is open, from playAsync() until the end of the track is
+     * reached or the playback is cancelled
+     */
+    boolean isOpen() {
+        return sequencer.isOpen();
+    }
+
+    /**
+     * The sequencer is opened to begin playing its track, blocks without using
+     * the CPU until the end of the track is reached, then closes the sequencer.
+     * If interrupted the playback is stopped and the interrupt flag is kept.
+     */
+    public void play() throws MidiUnavailableException {
+        CompletableFuture<Void> done = playAsync();
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            done.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Playback failed", e.getCause());
         }
+    }
 
-        // when done playing, close the sequencer
-        sequencer.close();
+    /**
+     * Passed as the channel to dumpEvents to keep the events of every channel.
+     */
+    public static final int ANY_CHANNEL = -1;
+
+    /**
+     * Writes the entire track information to out, one line per MIDI event, as toString() does.
+     *
+     * @param out where the events are written
+     * @throws IOException if out cannot be written
+     */
+    public void dumpEvents(Appendable out) throws IOException {
+        dumpEvents(track, out, 0, Long.MAX_VALUE, ANY_CHANNEL);
     }
 
     /**
-     * @return string that displays the entire track information as a
-     * sequence of MIDI events, where each event is either turning on or
-     * off a note at a certain tick
+     * Writes the track information of the events between two ticks to out, one line per
+     * MIDI event, as toString() does.
+     *
+     * @param out where the events are written
+     * @param fromTick the first tick whose events are written
+     * @param toTick the tick before which the events stop; must be >= fromTick
+     * @param channel the only channel whose notes are written, or ANY_CHANNEL to write
+     * every event, events on no channel such as the end of the track are written only then
+     * @throws IOException if out cannot be written
      */
-    @Override
-    public String toString() {
-        String trackInfo = "";
-        
-        for (int i = 0; i < track.size(); i++) {
+    public void dumpEvents(Appendable out, long fromTick, long toTick, int channel) throws IOException {
+        dumpEvents(track, out, fromTick, toTick, channel);
+    }
+
+    /**
+     * Writes the events of any track between two ticks to out as each is reached, so no
+     * string of the whole track is built.
+     *
+     * @param track the track whose events are written, in order of their ticks
+     * @param out where the events are written
+     * @param fromTick the first tick whose events are written
+     * @param toTick the tick before which the events stop; must be >= fromTick
+     * @param channel the only channel whose notes are written, or ANY_CHANNEL
+     * @throws IOException if out cannot be written
+     */
+    public static void dumpEvents(Track track, Appendable out, long fromTick, long toTick, int channel)
+            throws IOException {
+        // the events of a track are kept in order of their ticks, so find the first one to write
+        int low = 0;
+        int high = track.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (track.get(middle).getTick() < fromTick) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int i = low; i < track.size(); i++) {
             MidiEvent e = track.get(i);
+            if (e.getTick() >= toTick) {
+                break;
+            }
             MidiMessage msg = e.getMessage();
-            String msgString = "";
 
-            if (msg instanceof javax.sound.midi.ShortMessage) {
+            if (msg instanceof ShortMessage) {
                 ShortMessage smg = ((ShortMessage) msg);
+                if (channel != ANY_CHANNEL && smg.getChannel() != channel) {
+                    continue;
+                }
                 int command = smg.getCommand();
                 String commandType = "UnknownCommand";
 
@@ -132,15 +399,33 @@ public class SequencePlayer {
                     commandType = "NOTE_ON ";
                 }
 
-                msgString = "Event: " + commandType + " Pitch: " + smg.getData1() + " ";
+                out.append("Event: ").append(commandType).append(" Pitch: ")
+                        .append(Integer.toString(smg.getData1())).append(' ');
+            } else if (channel == ANY_CHANNEL) {
+                out.append("***** End of track *****  ");
             } else {
-                msgString = "***** End of track *****  ";
+                continue;
             }
 
-            trackInfo = trackInfo + msgString + " Tick: " + e.getTick() + "\n";
+            out.append(" Tick: ").append(Long.toString(e.getTick())).append('\n');
         }
+    }
 
-        return trackInfo;
+    /**
+     * @return string that displays the entire track information as a
+     * sequence of MIDI events, where each event is either turning on or
+     * off a note at a certain tick
+     */
+    @Override
+    public String toString() {
+        StringBuilder trackInfo = new StringBuilder();
+        try {
+            dumpEvents(trackInfo);
+        } catch (IOException e) {
+            // a StringBuilder is never stopped from being written
+            throw new RuntimeException(e);
+        }
+        return trackInfo.toString();
     }
 
     private void checkRep() {
@@ -1,8 +1,24 @@
 package sound;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiSystem;
 import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Track;
 
+import org.junit.Assume;
 import org.junit.Test;
 
 /**
@@ -118,6 +134,190 @@ public class SequencePlayerTest {
             
         }
 	}
-}
 
+	@Test(timeout = 30000)
+	// A short track should complete its future once it has played, and cancelling a long one should release the sequencer
+	public void playAsyncTest() throws InvalidMidiDataException, InterruptedException, ExecutionException,
+			TimeoutException {
+		SequencePlayer shortTrack;
+		SequencePlayer longTrack;
+		CompletableFuture<Void> played;
+		try {
+			shortTrack = new SequencePlayer(480, 4);
+			longTrack = new SequencePlayer(60, 4);
+			shortTrack.addNote(60, 0, 1);
+			longTrack.addNote(60, 0, 4 * 600);
+			played = shortTrack.playAsync();
+		} catch (MidiUnavailableException e) {
+			Assume.assumeNoException(e);
+			return;
+		}
+		played.get(20, TimeUnit.SECONDS);
+		// The sequencer is closed before the future completes
+		assertFalse(shortTrack.isOpen());
+		CompletableFuture<Void> playing;
+		try {
+			playing = longTrack.playAsync();
+		} catch (MidiUnavailableException e) {
+			Assume.assumeNoException(e);
+			return;
+		}
+		assertTrue(longTrack.isOpen());
+		assertTrue(playing.cancel(true));
+		assertFalse(longTrack.isOpen());
+		assertTrue(playing.isCancelled());
+	}
+
+	@Test
+	// The dump of a track should list its events in order, filtered by ticks and channel, with no device open
+	public void dumpEventsTest() throws InvalidMidiDataException, IOException {
+		Track track = new Sequence(Sequence.PPQ, 4).createTrack();
+		TrackWriter writer = new TrackWriter(track);
+		writer.addNote(60, 0, 4);
+		writer.addNote(64, 4, 4);
+		writer.addNote(67, 8, 8);
+		StringBuilder all = new StringBuilder();
+		SequencePlayer.dumpEvents(track, all, 0, Long.MAX_VALUE, SequencePlayer.ANY_CHANNEL);
+		assertEquals("Event: NOTE_ON  Pitch: 60  Tick: 0\n"
+				+ "Event: NOTE_OFF Pitch: 60  Tick: 4\n"
+				+ "Event: NOTE_ON  Pitch: 64  Tick: 4\n"
+				+ "Event: NOTE_OFF Pitch: 64  Tick: 8\n"
+				+ "Event: NOTE_ON  Pitch: 67  Tick: 8\n"
+				+ "Event: NOTE_OFF Pitch: 67  Tick: 16\n"
+				+ "***** End of track *****   Tick: 16\n", all.toString());
+		StringBuilder middle = new StringBuilder();
+		SequencePlayer.dumpEvents(track, middle, 4, 8, SequencePlayer.ANY_CHANNEL);
+		assertEquals("Event: NOTE_OFF Pitch: 60  Tick: 4\n"
+				+ "Event: NOTE_ON  Pitch: 64  Tick: 4\n", middle.toString());
+		StringBuilder otherChannel = new StringBuilder();
+		SequencePlayer.dumpEvents(track, otherChannel, 0, Long.MAX_VALUE, 1);
+		assertEquals("", otherChannel.toString());
+		StringBuilder firstChannel = new StringBuilder();
+		SequencePlayer.dumpEvents(track, firstChannel, 16, Long.MAX_VALUE, 0);
+		assertEquals("Event: NOTE_OFF Pitch: 67  Tick: 16\n", firstChannel.toString());
+	}
+
+	@Test
+	// Adding notes all at once should build the same track as adding them one by one
+	public void addNotesTest() throws InvalidMidiDataException {
+		// Notes of no ticks among them, whose offs must follow their own ons
+		int[] notes = {60, 64, 67, 62, 70, 69, 72, 65, 71};
+		long[] startTicks = {0, 0, 0, 4, 4, 4, 8, 12, 16};
+		int[] durations = {4, 4, 8, 8, 0, 4, 4, 4, 0};
+		SequencePlayer single;
+		SequencePlayer bulk;
+		try {
+			single = new SequencePlayer(120, 4);
+			bulk = new SequencePlayer(120, 4);
+		} catch (MidiUnavailableException e) {
+			e.printStackTrace();
+			return;
+		}
+		// One by one in order of their start, as the renderer adds them
+		for (int i = 0; i < notes.length; i++) {
+			single.addNote(notes[i], (int) startTicks[i], durations[i]);
+		}
+		bulk.addNotes(notes, startTicks, durations);
+		assertEquals(single.toString(), bulk.toString());
+	}
+
+	@Test
+	// A written file should hold the events a TrackWriter would, a note of no ticks turned off after it is on
+	public void midiFileWriterTest() throws InvalidMidiDataException, IOException {
+		int[] notes = {60, 64, 67, 62, 70, 69, 72, 65, 71};
+		int[] startTicks = {0, 0, 0, 4, 4, 4, 8, 12, 16};
+		int[] durations = {4, 4, 8, 8, 0, 4, 4, 4, 0};
+		MidiFileWriter writer = new MidiFileWriter(4);
+		NoteSink file = writer.createTrack();
+		Track expected = new Sequence(Sequence.PPQ, 4).createTrack();
+		TrackWriter track = new TrackWriter(expected);
+		for (int i = 0; i < notes.length; i++) {
+			file.addNote(notes[i], startTicks[i], durations[i]);
+			track.addNote(notes[i], startTicks[i], durations[i]);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writer.write(out);
+		Track written = MidiSystem.getSequence(new ByteArrayInputStream(out.toByteArray())).getTracks()[0];
+		StringBuilder expectedEvents = new StringBuilder();
+		SequencePlayer.dumpEvents(expected, expectedEvents, 0, Long.MAX_VALUE, 0);
+		StringBuilder writtenEvents = new StringBuilder();
+		SequencePlayer.dumpEvents(written, writtenEvents, 0, Long.MAX_VALUE, 0);
+		assertEquals(expectedEvents.toString(), writtenEvents.toString());
+		assertTrue(writtenEvents.toString().contains("Event: NOTE_ON  Pitch: 70  Tick: 4\n"
+				+ "Event: NOTE_OFF Pitch: 70  Tick: 4\n"));
+	}
+
+	@Test
+	// Merged voices should each keep their own notes on their own channel, the track in order of ticks
+	public void addVoicesTest() throws InvalidMidiDataException, IOException {
+		Timeline first = new Timeline();
+		first.addNote(60, 0, 4);
+		first.addNote(64, 4, 4);
+		first.addNote(67, 8, 8);
+		Timeline second = new Timeline();
+		second.addNote(48, 0, 8);
+		second.addNote(55, 8, 4);
+		second.addNote(52, 12, 4);
+		Track track = new Sequence(Sequence.PPQ, 4).createTrack();
+		SequencePlayer.addVoices(track, new Timeline[] {first, second, new Timeline()});
+		// 12 notes events and the end of the track
+		assertEquals(13, track.size());
+		for (int i = 1; i < track.size(); i++) {
+			assertTrue(track.get(i - 1).getTick() <= track.get(i).getTick());
+		}
+		StringBuilder firstNotes = new StringBuilder();
+		SequencePlayer.dumpEvents(track, firstNotes, 0, Long.MAX_VALUE, SequencePlayer.getChannel(0));
+		assertEquals("Event: NOTE_ON  Pitch: 60  Tick: 0\n"
+				+ "Event: NOTE_OFF Pitch: 60  Tick: 4\n"
+				+ "Event: NOTE_ON  Pitch: 64  Tick: 4\n"
+				+ "Event: NOTE_OFF Pitch: 64  Tick: 8\n"
+				+ "Event: NOTE_ON  Pitch: 67  Tick: 8\n"
+				+ "Event: NOTE_OFF Pitch: 67  Tick: 16\n", firstNotes.toString());
+		StringBuilder secondNotes = new StringBuilder();
+		SequencePlayer.dumpEvents(track, secondNotes, 0, Long.MAX_VALUE, SequencePlayer.getChannel(1));
+		assertEquals("Event: NOTE_ON  Pitch: 48  Tick: 0\n"
+				+ "Event: NOTE_OFF Pitch: 48  Tick: 8\n"
+				+ "Event: NOTE_ON  Pitch: 55  Tick: 8\n"
+				+ "Event: NOTE_OFF Pitch: 55  Tick: 12\n"
+				+ "Event: NOTE_ON  Pitch: 52  Tick: 12\n"
+				+ "Event: NOTE_OFF Pitch: 52  Tick: 16\n", secondNotes.toString());
+	}
 
+	@Test
+	// A merged note of no ticks should be turned off after it is on, whichever voice is playing at that tick
+	public void addVoicesZeroLengthTest() throws InvalidMidiDataException, IOException {
+		Timeline first = new Timeline();
+		first.addNote(60, 0, 4);
+		first.addNote(64, 4, 0);
+		first.addNote(67, 4, 4);
+		Timeline second = new Timeline();
+		second.addNote(48, 4, 0);
+		second.addNote(55, 4, 4);
+		Track track = new Sequence(Sequence.PPQ, 4).createTrack();
+		SequencePlayer.addVoices(track, new Timeline[] {first, second});
+		StringBuilder firstNotes = new StringBuilder();
+		SequencePlayer.dumpEvents(track, firstNotes, 0, Long.MAX_VALUE, SequencePlayer.getChannel(0));
+		assertEquals("Event: NOTE_ON  Pitch: 60  Tick: 0\n"
+				+ "Event: NOTE_OFF Pitch: 60  Tick: 4\n"
+				+ "Event: NOTE_ON  Pitch: 64  Tick: 4\n"
+				+ "Event: NOTE_OFF Pitch: 64  Tick: 4\n"
+				+ "Event: NOTE_ON  Pitch: 67  Tick: 4\n"
+				+ "Event: NOTE_OFF Pitch: 67  Tick: 8\n", firstNotes.toString());
+		StringBuilder secondNotes = new StringBuilder();
+		SequencePlayer.dumpEvents(track, secondNotes, 0, Long.MAX_VALUE, SequencePlayer.getChannel(1));
+		assertEquals("Event: NOTE_ON  Pitch: 48  Tick: 4\n"
+				+ "Event: NOTE_OFF Pitch: 48  Tick: 4\n"
+				+ "Event: NOTE_ON  Pitch: 55  Tick: 4\n"
+				+ "Event: NOTE_OFF Pitch: 55  Tick: 8\n", secondNotes.toString());
+	}
+
+	@Test
+	// Voices should take every channel but the percussion channel, in turn
+	public void getChannelTest() {
+		assertEquals(0, SequencePlayer.getChannel(0));
+		assertEquals(8, SequencePlayer.getChannel(8));
+		assertEquals(10, SequencePlayer.getChannel(9));
+		assertEquals(15, SequencePlayer.getChannel(14));
+		assertEquals(0, SequencePlayer.getChannel(15));
+	}
+}
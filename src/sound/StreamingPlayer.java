@@ -0,0 +1,203 @@
+package sound;
+
+import java.text.MessageFormat;
+import java.util.PriorityQueue;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+
+/**
+ * Plays notes as they are scheduled instead of after a whole track has been built.
+ * Notes may be added before and during playback; a background thread sends each
+ * note on and note off to the synthesizer when its tick comes due, so playback can
+ * begin as soon as the first few notes are known.
+ */
+public class StreamingPlayer implements NoteSink {
+
+    private final Receiver receiver;
+    private final int beatsPerMinute;
+    private final int ticksPerQuarterNote;
+
+    // events not yet sent, earliest first
+    private final PriorityQueue<Event> events = new PriorityQueue<Event>();
+    // count of events added, keeps events on the same tick in the order they were added
+    private long eventCount = 0;
+    // whether every note has been added
+    private boolean finished = false;
+    // System.nanoTime() at tick 0
+    private long startTime;
+    private Thread pump;
+
+    private static int DEFAULT_CHANNEL = 0;    // midi channel - for our purpose always 0
+    private static int DEFAULT_VELOCITY = 100; // the volume
+
+    /*
+     * Rep invariant:
+     *   receiver is non-null,
+     *   beatsPerMinute and ticksPerQuarterNote are positive,
+     *   pump is null until start() is called
+     */
+
+    /**
+     * @param beatsPerMinute the number of beats per minute, where each beat is equal to
+     * a quarter note in duration
+     * @param ticksPerQuarterNote the number of ticks per quarter note
+     * @throws MidiUnavailableException
+     */
+    public StreamingPlayer(int beatsPerMinute, int ticksPerQuarterNote)
+            throws MidiUnavailableException {
+        this.receiver = MidiSystem.getReceiver();
+        this.beatsPerMinute = beatsPerMinute;
+        this.ticksPerQuarterNote = ticksPerQuarterNote;
+        checkRep();
+    }
+
+    /**
+     * A note on or note off waiting to be sent.
+     */
+    private static class Event implements Comparable<Event> {
+        private final long tick;
+        private final long order;
+        private final int command;
+        private final int note;
+
+        private Event(long tick, long order, int command, int note) {
+            this.tick = tick;
+            this.order = order;
+            this.command = command;
+            this.note = note;
+        }
+
+        @Override
+        public int compareTo(Event that) {
+            if (this.tick != that.tick) {
+                return this.tick < that.tick ? -1 : 1;
+            }
+            return this.order < that.order ? -1 : (this.order == that.order ? 0 : 1);
+        }
+    }
+
+    /**
+     * Schedules the note to be played starting at startTick for the duration of numTicks.
+     * Notes whose time has already passed when added are played at once.
+     * 
+     * @param note the pitch value for the note to be played; must be a valid note
+     * @param startTick the starting tick; must be >= 0
+     * @param numTicks the number of ticks for which this note should be played; must be >= 0
+     */
+    @Override
+    public synchronized void addNote(int note, int startTick, int numTicks) {
+        events.add(new Event(startTick, eventCount++, ShortMessage.NOTE_ON, note));
+        events.add(new Event(startTick + numTicks, eventCount++, ShortMessage.NOTE_OFF, note));
+        notifyAll();
+    }
+
+    /**
+     * Starts the clock at tick 0 and begins sending the scheduled notes, does nothing if
+     * already started.
+     */
+    public synchronized void start() {
+        if (pump != null) {
+            return;
+        }
+        startTime = System.nanoTime();
+        pump = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                pumpEvents();
+            }
+        }, "StreamingPlayer");
+        pump.setDaemon(true);
+        pump.start();
+    }
+
+    /**
+     * Marks that no more notes will be added, playback ends after the last of them.
+     */
+    public synchronized void finish() {
+        finished = true;
+        notifyAll();
+    }
+
+    /**
+     * Starts playback if need be and waits until every note has been played, finish()
+     * must have been called or this waits forever, then closes the synthesizer.
+     */
+    public void awaitEnd() throws InterruptedException {
+        start();
+        pump.join();
+        receiver.close();
+    }
+
+    /**
+     * Stops playback at once, dropping any notes not yet played.
+     */
+    public void stop() {
+        Thread running;
+        synchronized (this) {
+            events.clear();
+            finished = true;
+            running = pump;
+            notifyAll();
+        }
+        if (running != null) {
+            running.interrupt();
+        }
+        receiver.close();
+    }
+
+    /**
+     * Sends each event when it comes due, sleeping in between, until finished and empty.
+     */
+    private synchronized void pumpEvents() {
+        try {
+            while (true) {
+                Event next = events.peek();
+                if (next == null) {
+                    if (finished) {
+                        return;
+                    }
+                    wait();
+                    continue;
+                }
+                long delay = startTime + tickToNanos(next.tick) - System.nanoTime();
+                if (delay > 0) {
+                    wait(delay / 1000000, (int) (delay % 1000000));
+                } else {
+                    events.poll();
+                    send(next);
+                }
+            }
+        } catch (InterruptedException e) {
+            // stopped, leave the remaining events unplayed
+        }
+    }
+
+    /**
+     * @return nanoseconds from tick 0 until the given tick at this tempo
+     */
+    private long tickToNanos(long tick) {
+        return tick * 60000000000L / ((long) beatsPerMinute * ticksPerQuarterNote);
+    }
+
+    private void send(Event event) {
+        try {
+            ShortMessage msg = new ShortMessage();
+            msg.setMessage(event.command, DEFAULT_CHANNEL, event.note, DEFAULT_VELOCITY);
+            receiver.send(msg, -1);
+        } catch (InvalidMidiDataException e) {
+            String msg = MessageFormat.format("Cannot play note with the pitch {0} at tick {1}",
+                    event.note, event.tick);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
+    private void checkRep() {
+        assert receiver != null : "receiver should be non-null";
+        assert beatsPerMinute > 0 : "should be positive number of beats per minute";
+        assert ticksPerQuarterNote > 0 : "should be positive number of ticks per quarter note";
+    }
+}
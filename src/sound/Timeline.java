@@ -0,0 +1,121 @@
+package sound;
+
+import java.util.Arrays;
+
+/**
+ * Collects the notes scheduled on it as a flat array of longs, one per note, ordered by the tick
+ * at which they start, so a rendered Voice can be kept and replayed without any objects per note.
+ *
+ * Each event holds the starting tick in its high 32 bits, then 24 bits of length in ticks and
+ * the 8 bit pitch value, so sorting the longs sorts the notes by when they start.
+ */
+public class Timeline implements NoteSink {
+
+    private static final int MAX_TICKS = 0xFFFFFF;
+
+    private long[] events = new long[64];
+    private int size;
+    // Whether the events are still in the order of their starts
+    private boolean sorted = true;
+
+    /*
+     * Rep invariant:
+     *   0 <= size <= events.length,
+     *   if sorted, events[0..size) is in ascending order
+     */
+
+    /**
+     * Adds a note to the timeline.
+     *
+     * @param note the pitch value for the note to be played; must be a valid note
+     * @param startTick the starting tick; must be >= 0
+     * @param numTicks the number of ticks for which this note should be played; must be >= 0
+     *        and below 2^24
+     */
+    @Override
+    public void addNote(int note, int startTick, int numTicks) {
+        if (note < 0 || note > 0xFF || startTick < 0 || numTicks < 0 || numTicks > MAX_TICKS) {
+            throw new IllegalArgumentException("Cannot add note with the pitch " + note + " at tick "
+                    + startTick + " for duration of " + numTicks);
+        }
+        if (size == events.length) {
+            events = Arrays.copyOf(events, size * 2);
+        }
+        long event = (long) startTick << 32 | (long) numTicks << 8 | note;
+        if (size > 0 && event < events[size - 1]) {
+            sorted = false;
+        }
+        events[size++] = event;
+        checkRep();
+    }
+
+    /**
+     * @return the number of notes added
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return a copy of the events, ordered by starting tick
+     */
+    public long[] toArray() {
+        sort();
+        return Arrays.copyOf(events, size);
+    }
+
+    /**
+     * @return the tick at which the last note to finish ends, 0 if there are no notes
+     */
+    public int getEndTick() {
+        int end = 0;
+        for (int i = 0; i < size; i++) {
+            end = Math.max(end, getStartTick(events[i]) + getTicks(events[i]));
+        }
+        return end;
+    }
+
+    /**
+     * Schedules every note on the given sink, in order of their starting ticks.
+     *
+     * @param sink the NoteSink on which to schedule the notes
+     */
+    public void replay(NoteSink sink) {
+        sort();
+        for (int i = 0; i < size; i++) {
+            sink.addNote(getNote(events[i]), getStartTick(events[i]), getTicks(events[i]));
+        }
+    }
+
+    private void sort() {
+        if (!sorted) {
+            Arrays.sort(events, 0, size);
+            sorted = true;
+        }
+    }
+
+    /**
+     * @return the starting tick of an event
+     */
+    public static int getStartTick(long event) {
+        return (int) (event >>> 32);
+    }
+
+    /**
+     * @return the length in ticks of an event
+     */
+    public static int getTicks(long event) {
+        return (int) (event >>> 8) & MAX_TICKS;
+    }
+
+    /**
+     * @return the pitch value of an event
+     */
+    public static int getNote(long event) {
+        return (int) event & 0xFF;
+    }
+
+    private void checkRep() {
+        assert size >= 0 && size <= events.length : "size should be within the events";
+    }
+}
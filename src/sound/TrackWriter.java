@@ -0,0 +1,103 @@
+package sound;
+
+import java.text.MessageFormat;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+/**
+ * Writes notes into a MIDI Track as they are scheduled, without any Sequencer or
+ * synthesizer, so a Sequence can be built and saved on a machine with no audio device.
+ * The notes of voice v are best written on channel SequencePlayer.getChannel(v), as they are played.
+ */
+public class TrackWriter implements NoteSink {
+
+    private final Track track;
+    private final int channel;
+
+    private static final int DEFAULT_VELOCITY = 100; // the volume
+    private static final int MIDI_CHANNELS = 16;
+    private static final int SET_TEMPO = 0x51; // meta message type of a tempo change
+
+    /*
+     * Rep invariant:
+     *   track is non-null,
+     *   channel is in 0..15
+     */
+
+    /**
+     * @param track the track into which notes are written on channel 0
+     */
+    public TrackWriter(Track track) {
+        this(track, 0);
+    }
+
+    /**
+     * @param track the track into which notes are written
+     * @param channel the MIDI channel of the notes; must be in 0..15
+     */
+    public TrackWriter(Track track, int channel) {
+        if (channel < 0 || channel >= MIDI_CHANNELS) {
+            throw new IllegalArgumentException("There is no MIDI channel " + channel);
+        }
+        this.track = track;
+        this.channel = channel;
+        checkRep();
+    }
+
+    /**
+     * Adds a tempo change at the given tick, as a Sequencer playing a file would otherwise
+     * use 120 beats per minute.
+     *
+     * @param beatsPerMinute the number of beats per minute, where each beat is equal to
+     * a quarter note in duration; must be positive
+     * @param tick the tick at which the tempo takes effect; must be >= 0
+     */
+    public void setTempo(int beatsPerMinute, int tick) {
+        int microsPerQuarter = 60000000 / beatsPerMinute;
+        byte[] data = {(byte) (microsPerQuarter >> 16), (byte) (microsPerQuarter >> 8), (byte) microsPerQuarter};
+        try {
+            track.add(new MidiEvent(new MetaMessage(SET_TEMPO, data, data.length), tick));
+        } catch (InvalidMidiDataException e) {
+            throw new RuntimeException("Cannot set the tempo to " + beatsPerMinute, e);
+        }
+    }
+
+    /**
+     * @param eventType the MIDI status byte; must be a valid MidiMessage type in ShortMessage
+     * @param note a MIDI data byte; must be a valid pitch value
+     * @param tick the tick of the event; must be >= 0
+     */
+    private void addMidiEvent(int eventType, int note, int tick) throws InvalidMidiDataException {
+        ShortMessage msg = new ShortMessage();
+        msg.setMessage(eventType, channel, note, DEFAULT_VELOCITY);
+        track.add(new MidiEvent(msg, tick));
+    }
+
+    /**
+     * Writes a note on at startTick and a note off numTicks later.
+     *
+     * @param note the pitch value for the note to be played; must be a valid note
+     * @param startTick the starting tick; must be >= 0
+     * @param numTicks the number of ticks for which this note should be played; must be >= 0
+     */
+    @Override
+    public void addNote(int note, int startTick, int numTicks) {
+        try {
+            addMidiEvent(ShortMessage.NOTE_ON, note, startTick);
+            addMidiEvent(ShortMessage.NOTE_OFF, note, startTick + numTicks);
+        } catch (InvalidMidiDataException e) {
+            String msg = MessageFormat.format("Cannot add note with the pitch {0} at tick {1} " +
+                    "for duration of {2}", note, startTick, numTicks);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
+    private void checkRep() {
+        assert track != null : "track should be non-null";
+        assert channel >= 0 && channel < MIDI_CHANNELS : "channel should be a MIDI channel";
+    }
+}